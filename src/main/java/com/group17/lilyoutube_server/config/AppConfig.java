@@ -1,7 +1,10 @@
 package com.group17.lilyoutube_server.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
@@ -10,7 +13,27 @@ import org.springframework.web.client.RestTemplate;
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(
+            @Value("${app.sync.wire-format:protobuf}") String wireFormat,
+            @Value("${app.sync.compression:gzip}") String compression,
+            @Value("${app.sync.connect-timeout-ms:2000}") int connectTimeoutMs,
+            @Value("${app.sync.read-timeout-ms:5000}") int readTimeoutMs) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        boolean gzip = "gzip".equalsIgnoreCase(compression);
+
+        if ("protobuf".equalsIgnoreCase(wireFormat)) {
+            // First in line, so peers are asked for protobuf before JSON
+            restTemplate.getMessageConverters().add(0, new ViewSyncProtobufConverter(gzip));
+        }
+        if (gzip) {
+            restTemplate.getInterceptors().add((request, body, execution) -> {
+                request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+                return execution.execute(request, body);
+            });
+        }
+        return restTemplate;
     }
 }
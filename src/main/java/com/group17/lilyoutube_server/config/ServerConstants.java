@@ -9,4 +9,6 @@ public final class ServerConstants {
     public static final String videoDir = mediaDir + "/videos";
     public static final String thumbDir = mediaDir + "/thumbnails";
     public static final String compressedThumbDir = mediaDir + "/compressed-thumbnails";
+    public static final String thumbVariantDir = mediaDir + "/thumbnail-variants";
+    public static final String uploadDir = mediaDir + "/uploads";
 }
@@ -0,0 +1,131 @@
+package com.group17.lilyoutube_server.config;
+
+import com.group17.lilyoutube_server.dto.ViewSyncDTO;
+import com.group17.lilyoutube_server.proto.VideoCounters;
+import com.group17.lilyoutube_server.proto.ViewSyncState;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes {@link ViewSyncDTO} as the compact {@link ViewSyncState} protobuf.
+ * JSON stays available through the regular Jackson converter, so peers that do not
+ * ask for protobuf keep working. Gzip bodies are recognised by Content-Encoding.
+ */
+public class ViewSyncProtobufConverter extends AbstractHttpMessageConverter<ViewSyncDTO> {
+
+    public static final String PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType PROTOBUF = MediaType.parseMediaType(PROTOBUF_VALUE);
+
+    private static final String GZIP = "gzip";
+
+    private final boolean compressOutput;
+
+    public ViewSyncProtobufConverter(boolean compressOutput) {
+        super(PROTOBUF);
+        this.compressOutput = compressOutput;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ViewSyncDTO.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected ViewSyncDTO readInternal(Class<? extends ViewSyncDTO> clazz, HttpInputMessage inputMessage)
+            throws IOException {
+        InputStream body = inputMessage.getBody();
+        if (GZIP.equalsIgnoreCase(inputMessage.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+            body = new GZIPInputStream(body);
+        }
+        try {
+            return fromProto(ViewSyncState.parseFrom(body));
+        } catch (IndexOutOfBoundsException e) {
+            throw new HttpMessageNotReadableException("Malformed view sync payload", e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(ViewSyncDTO dto, HttpOutputMessage outputMessage) throws IOException {
+        ViewSyncState state = toProto(dto);
+        if (compressOutput) {
+            outputMessage.getHeaders().set(HttpHeaders.CONTENT_ENCODING, GZIP);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(outputMessage.getBody())) {
+                state.writeTo(gzip);
+            }
+        } else {
+            OutputStream body = outputMessage.getBody();
+            state.writeTo(body);
+            body.flush();
+        }
+    }
+
+    @Override
+    protected Long getContentLength(ViewSyncDTO dto, MediaType contentType) {
+        // Unknown up front; the message is built in writeInternal
+        return null;
+    }
+
+    public static ViewSyncState toProto(ViewSyncDTO dto) {
+        ViewSyncState.Builder builder = ViewSyncState.newBuilder()
+                .setSourceReplicaName(dto.getSourceReplicaName() != null ? dto.getSourceReplicaName() : "")
+                .setVersion(dto.getVersion() != null ? dto.getVersion() : 0L)
+                .setFull(dto.isFull());
+
+        Map<String, Integer> dictionary = new HashMap<>();
+        if (dto.getVideoViews() != null) {
+            for (Map.Entry<Long, Map<String, Long>> video : dto.getVideoViews().entrySet()) {
+                builder.addVideos(toCounters(video.getKey(), video.getValue(), dictionary, builder));
+            }
+        }
+        if (dto.getPostLikes() != null) {
+            for (Map.Entry<Long, Map<String, Long>> post : dto.getPostLikes().entrySet()) {
+                builder.addPostLikes(toCounters(post.getKey(), post.getValue(), dictionary, builder));
+            }
+        }
+        return builder.build();
+    }
+
+    private static VideoCounters.Builder toCounters(Long id, Map<String, Long> replicaCounts,
+                                                    Map<String, Integer> dictionary, ViewSyncState.Builder builder) {
+        VideoCounters.Builder counters = VideoCounters.newBuilder().setVideoId(id);
+        for (Map.Entry<String, Long> replica : replicaCounts.entrySet()) {
+            Integer index = dictionary.get(replica.getKey());
+            if (index == null) {
+                index = dictionary.size();
+                dictionary.put(replica.getKey(), index);
+                builder.addReplicas(replica.getKey());
+            }
+            counters.addReplicaIndex(index).addCounts(replica.getValue());
+        }
+        return counters;
+    }
+
+    public static ViewSyncDTO fromProto(ViewSyncState state) {
+        List<String> replicas = state.getReplicasList();
+        return new ViewSyncDTO(fromCounters(state.getVideosList(), replicas), state.getSourceReplicaName(),
+                state.getVersion(), state.getFull(), fromCounters(state.getPostLikesList(), replicas));
+    }
+
+    private static Map<Long, Map<String, Long>> fromCounters(List<VideoCounters> list, List<String> replicas) {
+        Map<Long, Map<String, Long>> result = new HashMap<>(list.size() * 2);
+        for (VideoCounters counters : list) {
+            Map<String, Long> replicaCounts = new HashMap<>();
+            for (int i = 0; i < counters.getReplicaIndexCount(); i++) {
+                replicaCounts.put(replicas.get(counters.getReplicaIndex(i)), counters.getCounts(i));
+            }
+            result.put(counters.getVideoId(), replicaCounts);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,20 @@
+package com.group17.lilyoutube_server.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Lets the internal view sync endpoints speak protobuf next to JSON.
+ * Responses are gzipped by the server compression settings when the peer accepts it.
+ */
+@Configuration
+public class ViewSyncWireConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new ViewSyncProtobufConverter(false));
+    }
+}
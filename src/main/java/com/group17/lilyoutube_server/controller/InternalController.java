@@ -1,26 +1,39 @@
 package com.group17.lilyoutube_server.controller;
 
+import com.group17.lilyoutube_server.config.ViewSyncProtobufConverter;
+import com.group17.lilyoutube_server.dto.TranscodingStatusDTO;
 import com.group17.lilyoutube_server.dto.ViewSyncDTO;
+import com.group17.lilyoutube_server.service.TranscodingJobQueue;
 import com.group17.lilyoutube_server.service.ViewSyncService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
-@RequestMapping("/api/internal/views")
+@RequestMapping("/api/internal")
 @RequiredArgsConstructor
 public class InternalController {
 
     private final ViewSyncService viewSyncService;
+    private final TranscodingJobQueue transcodingJobQueue;
 
-    @PostMapping("/sync")
+    @PostMapping(value = "/views/sync",
+            consumes = { MediaType.APPLICATION_JSON_VALUE, ViewSyncProtobufConverter.PROTOBUF_VALUE })
     public ResponseEntity<Void> receiveSync(@RequestBody ViewSyncDTO syncData) {
         viewSyncService.receiveSync(syncData);
         return ResponseEntity.ok().build();
     }
 
-    @GetMapping("/state")
-    public ResponseEntity<ViewSyncDTO> getLocalState() {
-        return ResponseEntity.ok(viewSyncService.getLocalState());
+    @GetMapping(value = "/views/state",
+            produces = { MediaType.APPLICATION_JSON_VALUE, ViewSyncProtobufConverter.PROTOBUF_VALUE })
+    public ResponseEntity<ViewSyncDTO> getLocalState(@RequestParam(required = false) Long since) {
+        return ResponseEntity.ok(viewSyncService.getStateSince(since));
+    }
+
+    @GetMapping("/transcoding")
+    public ResponseEntity<TranscodingStatusDTO> getTranscodingStatus() {
+        return ResponseEntity.ok(new TranscodingStatusDTO(transcodingJobQueue.queueLength(),
+                transcodingJobQueue.deadLetterLength(), transcodingJobQueue.inProgress()));
     }
 }
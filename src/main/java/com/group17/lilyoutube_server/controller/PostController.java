@@ -1,5 +1,6 @@
 package com.group17.lilyoutube_server.controller;
 
+import com.group17.lilyoutube_server.dto.FeedPageDTO;
 import com.group17.lilyoutube_server.dto.PostDTO;
 import com.group17.lilyoutube_server.dto.UserDTO;
 import com.group17.lilyoutube_server.service.LikeService;
@@ -32,6 +33,13 @@ public class PostController {
         return ResponseEntity.ok(postService.getAllPosts());
     }
 
+    @GetMapping("/feed")
+    public ResponseEntity<FeedPageDTO> getFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(postService.getFeed(cursor, size));
+    }
+
     @GetMapping("/{name}")
     public ResponseEntity<PostDTO> getPostByVideoName(@PathVariable String name) {
         PostDTO post = postService.getPostByVideoName(name + ".mp4");
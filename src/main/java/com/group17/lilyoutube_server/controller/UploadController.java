@@ -0,0 +1,80 @@
+package com.group17.lilyoutube_server.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.group17.lilyoutube_server.dto.CreateUploadDTO;
+import com.group17.lilyoutube_server.dto.PostDTO;
+import com.group17.lilyoutube_server.dto.UploadSessionDTO;
+import com.group17.lilyoutube_server.dto.UserDTO;
+import com.group17.lilyoutube_server.service.PostService;
+import com.group17.lilyoutube_server.service.ResumableUploadService;
+import com.group17.lilyoutube_server.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.Principal;
+
+/**
+ * Resumable video upload: create a session, PUT its chunks (in any order, retrying as
+ * needed), check which chunks are missing, then finalize into a post.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+public class UploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    private final ResumableUploadService uploadService;
+    private final PostService postService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping
+    public ResponseEntity<UploadSessionDTO> createUpload(@RequestBody CreateUploadDTO request, Principal principal)
+            throws IOException {
+        UploadSessionDTO session = uploadService.create(request, principal.getName());
+        return ResponseEntity.created(URI.create("/api/uploads/" + session.getId())).body(session);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionDTO> getUpload(@PathVariable String id, Principal principal) {
+        return ResponseEntity.ok(uploadService.status(id, principal.getName()));
+    }
+
+    @PutMapping(value = "/{id}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionDTO> putChunk(@PathVariable String id, @PathVariable int index,
+                                                     @RequestHeader(UPLOAD_OFFSET) long offset,
+                                                     HttpServletRequest request, Principal principal)
+            throws IOException {
+        UploadSessionDTO session = uploadService.writeChunk(id, principal.getName(), index, offset,
+                request.getInputStream());
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, Long.toString(session.getBytesReceived()))
+                .body(session);
+    }
+
+    @PostMapping(value = "/{id}/finalize", consumes = { "multipart/form-data" })
+    public ResponseEntity<PostDTO> finalizeUpload(@PathVariable String id,
+                                                  @RequestPart("post") String postJson,
+                                                  @RequestPart("thumbnail") MultipartFile thumbnail,
+                                                  Principal principal) throws Exception {
+        PostDTO postDTO = objectMapper.readValue(postJson, PostDTO.class);
+        UserDTO usr = userService.getUserByEmail(principal.getName());
+        postDTO.setUser_id(usr.getId());
+
+        ResumableUploadService.CompletedUpload upload = uploadService.complete(id, principal.getName());
+        return ResponseEntity.ok(postService.createPost(postDTO, upload.file(), upload.filename(), thumbnail));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String id, Principal principal) throws IOException {
+        uploadService.abort(id, principal.getName());
+        return ResponseEntity.noContent().build();
+    }
+}
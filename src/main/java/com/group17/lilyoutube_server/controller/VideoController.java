@@ -2,20 +2,26 @@ package com.group17.lilyoutube_server.controller;
 
 import com.group17.lilyoutube_server.config.ServerConstants;
 import com.group17.lilyoutube_server.service.FileService;
+import com.group17.lilyoutube_server.service.HlsPlaylistService;
+import com.group17.lilyoutube_server.service.MediaFileService;
+import com.group17.lilyoutube_server.service.PremiereScheduleCache;
 import com.group17.lilyoutube_server.service.ThumbnailService;
+import com.group17.lilyoutube_server.service.TranscodingJobQueue;
+import com.group17.lilyoutube_server.service.VideoTranscodingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -23,9 +29,16 @@ import java.util.List;
 @RequiredArgsConstructor
 public class VideoController {
 
+    private static final int PREMIERE_WINDOW_SIZE = 3;
+    // Roughly one segment: how long until a pending transcode is likely to have one out
+    private static final String PENDING_RETRY_AFTER_SECONDS = "10";
+
     private final ThumbnailService thumbnailService;
     private final FileService fileService;
-    private final com.group17.lilyoutube_server.service.PostService postService;
+    private final MediaFileService mediaFileService;
+    private final HlsPlaylistService hlsPlaylistService;
+    private final PremiereScheduleCache premiereScheduleCache;
+    private final VideoTranscodingService transcodingService;
 
     @PostMapping("/upload-video")
     public ResponseEntity<String> uploadVideo(@RequestParam("file") MultipartFile file) {
@@ -36,11 +49,26 @@ public class VideoController {
         }
     }
 
+    /**
+     * Raw-body upload (no multipart), written straight to the video directory as it arrives.
+     */
+    @PostMapping(value = "/upload-video/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<String> uploadVideoStream(@RequestParam("filename") String filename,
+                                                    HttpServletRequest request) {
+        try {
+            return ResponseEntity.ok(fileService.saveStream(request.getInputStream(), filename,
+                    ServerConstants.videoDir));
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Upload failed: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/upload-picture")
     public ResponseEntity<String> uploadPicture(@RequestParam("file") MultipartFile file) {
         try {
             String fileName = fileService.saveFile(file, ServerConstants.thumbDir);
             thumbnailService.evictThumbnail(fileName);
+            thumbnailService.generateVariantsInBackground(fileName);
             return ResponseEntity.ok(fileName);
         } catch (IOException e) {
             return ResponseEntity.status(500).body("Upload failed: " + e.getMessage());
@@ -48,43 +76,38 @@ public class VideoController {
     }
 
     @GetMapping("/videos/{name}")
-    public ResponseEntity<?> getVideo(@PathVariable String name) {
+    public ResponseEntity<?> getVideo(@PathVariable String name, HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
         if (name.endsWith(".m3u8")) {
-            return getHlsPlaylist(name);
-        } else if (name.endsWith(".ts")) {
-            return getHlsSegment(name);
+            return getHlsPlaylist(name, request, response);
         }
-        return getFileAsResource(ServerConstants.videoDir, name);
+        // Segments and progressive files; returning null tells MVC the response is written
+        serveFile(ServerConstants.videoDir, name, request, response);
+        return null;
     }
 
-    private ResponseEntity<?> getHlsPlaylist(String playlistName) {
+    private ResponseEntity<?> getHlsPlaylist(String playlistName, HttpServletRequest request,
+                                             HttpServletResponse response) {
         try {
-            // DB stores "uuid.m3u8" now
-            com.group17.lilyoutube_server.dto.PostDTO post = postService.getPostByVideoName(playlistName);
-
-            if (post == null) {
-                 post = postService.getPostByVideoName(playlistName.replace(".m3u8", ".mp4"));
-            }
+            java.time.LocalDateTime scheduledStartTime =
+                    premiereScheduleCache.getScheduledStartTime(playlistName).orElse(null);
 
-            if (post != null && post.getScheduledStartTime() != null) {
+            if (scheduledStartTime != null) {
                 java.time.LocalDateTime now = java.time.LocalDateTime.now();
-                if (now.isBefore(post.getScheduledStartTime())) {
+                if (now.isBefore(scheduledStartTime)) {
                     return ResponseEntity.status(403).body("Video is not yet available.");
                 }
 
-                long secondsSinceStart = java.time.temporal.ChronoUnit.SECONDS.between(post.getScheduledStartTime(), now);
+                long secondsSinceStart = java.time.temporal.ChronoUnit.SECONDS.between(scheduledStartTime, now);
                 return getFilteredPlaylist(playlistName, secondsSinceStart);
             }
 
-            return getFileAsResource(ServerConstants.videoDir, playlistName);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
-    }
-
-    private ResponseEntity<?> getHlsSegment(String segmentName) {
-        try {
-            return getFileAsResource(ServerConstants.videoDir, segmentName);
+            ResponseEntity<?> inProgress = getInProgressPlaylist(playlistName);
+            if (inProgress != null) {
+                return inProgress;
+            }
+            serveFile(ServerConstants.videoDir, playlistName, request, response);
+            return null;
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -92,149 +115,97 @@ public class VideoController {
 
     private ResponseEntity<?> getFilteredPlaylist(String playlistName, long secondsSinceStart) throws IOException {
         Path filePath = Paths.get(ServerConstants.videoDir).resolve(playlistName).normalize();
-        if (!Files.exists(filePath)) {
+        byte[] content = hlsPlaylistService.renderLiveWindow(filePath, secondsSinceStart, PREMIERE_WINDOW_SIZE);
+        if (content == null) {
             return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/vnd.apple.mpegurl"))
+                .body(content);
+    }
 
-        java.util.List<String> lines = Files.readAllLines(filePath);
-
-        
-        List<String> header = new ArrayList<>();
-        List<HlsSegment> segments = new ArrayList<>();
-        
-        boolean headerDone = false;
-        double currentDuration = 0.0;
-        
-        double targetTagDuration = 10.0; // Default fallback
-
-        for (int i = 0; i < lines.size(); i++) {
-            String line = lines.get(i);
-            
-            if (line.startsWith("#EXT-X-TARGETDURATION:")) {
-                try {
-                     targetTagDuration = Double.parseDouble(line.substring(22));
-                } catch (Exception e) {}
-                header.add(line);
-            } else if (line.startsWith("#EXT-X-ENDLIST")) {
-                continue; 
-            } else if (line.startsWith("#EXTINF:")) {
-                headerDone = true;
-                String durationStr = line.substring(8, line.indexOf(","));
-                double duration = Double.parseDouble(durationStr);
-                
-                String filename = "";
-                if (i + 1 < lines.size()) {
-                    filename = lines.get(i + 1);
-                    i++;
-                }
-                
-                segments.add(new HlsSegment(duration, line, filename));
-                
-            } else if (!headerDone) {
-                header.add(line);
-            }
+    /**
+     * Serves a playlist whose transcoding has not finished: the segments so far without
+     * #EXT-X-ENDLIST, or 503 with Retry-After before the first segment is out, or 410 once
+     * the job has been given up on. Returns null once the playlist is complete, or when
+     * there is neither a playlist nor a job, so it is served as a plain file or a 404.
+     */
+    private ResponseEntity<?> getInProgressPlaylist(String playlistName) throws IOException {
+        Path root = Paths.get(ServerConstants.videoDir).toAbsolutePath().normalize();
+        Path filePath = root.resolve(playlistName).normalize();
+        if (!filePath.startsWith(root)) {
+            return ResponseEntity.notFound().build();
         }
-        
-        // Calculate Total Duration
-        double totalDuration = segments.stream().mapToDouble(s -> s.duration).sum();
-
-        if (secondsSinceStart >= totalDuration) {
-             List<String> response = new ArrayList<>(header);
-             for(HlsSegment s : segments) {
-                 response.add(s.extinf);
-                 response.add(s.filename);
-             }
-             response.add("#EXT-X-ENDLIST");
-             return createM3u8Response(response);
-        }
-        
-        int windowSize = 3;
-
-        int liveIndex = 0;
-        double accumulated = 0.0;
-        for (int i = 0; i < segments.size(); i++) {
-            accumulated += segments.get(i).duration;
-            if (accumulated >= secondsSinceStart) {
-                liveIndex = i;
-                break;
-            }
+        byte[] content = hlsPlaylistService.renderInProgress(filePath);
+        if (content == null && filePath.toFile().exists()) {
+            return null;
         }
-        if (accumulated < secondsSinceStart) liveIndex = segments.size() - 1;
-
-        int startIndex = Math.max(0, liveIndex - windowSize + 1);
-        int endIndex = liveIndex; // inclusive
-        
-        List<String> response = new ArrayList<>(header);
-        boolean hasSequence = false;
-        for(int i=0; i<response.size(); i++) {
-            if (response.get(i).startsWith("#EXT-X-MEDIA-SEQUENCE:")) {
-                response.set(i, "#EXT-X-MEDIA-SEQUENCE:" + startIndex);
-                hasSequence = true;
-                break;
-            }
+        TranscodingJobQueue.JobState state = transcodingService.jobState(ServerConstants.videoDir, playlistName);
+        if (state == TranscodingJobQueue.JobState.DEAD) {
+            return ResponseEntity.status(HttpStatus.GONE).body("Video could not be processed.");
         }
-        if (!hasSequence) {
-            response.add(1, "#EXT-X-MEDIA-SEQUENCE:" + startIndex);
+        if (content != null) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/vnd.apple.mpegurl"))
+                    .cacheControl(CacheControl.noCache())
+                    .body(content);
         }
-
-        for (int i = startIndex; i <= endIndex; i++) {
-            HlsSegment s = segments.get(i);
-            response.add(s.extinf);
-            response.add(s.filename);
+        if (state == TranscodingJobQueue.JobState.ACTIVE) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, PENDING_RETRY_AFTER_SECONDS)
+                    .body("Video is still being processed.");
         }
-        
-        return createM3u8Response(response);
-    }
-    
-    private ResponseEntity<byte[]> createM3u8Response(List<String> lines) {
-        String content = String.join("\n", lines);
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/vnd.apple.mpegurl"))
-                .body(content.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+        return null;
     }
 
-    private static class HlsSegment {
-        double duration;
-        String extinf;
-        String filename;
-        
-        public HlsSegment(double duration, String extinf, String filename) {
-            this.duration = duration;
-            this.extinf = extinf;
-            this.filename = filename;
+    /**
+     * The thumbnail, or with {@code w} the JPEG variant for that display width. The
+     * variant is only served to clients that accept JPEG; others get the original if they
+     * accept its type, and 406 otherwise.
+     */
+    @GetMapping("/thumbnails/{name}")
+    public ResponseEntity<byte[]> getThumbnail(@PathVariable String name,
+                                               @RequestParam(value = "w", required = false) Integer width,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false)
+                                               String accept) {
+        if (width != null && width <= 0) {
+            throw new IllegalArgumentException("w must be positive");
         }
-    }
+        List<MediaType> accepted = accept == null || accept.isBlank()
+                ? List.of(MediaType.ALL) : MediaType.parseMediaTypes(accept);
 
-    @GetMapping("/thumbnails/{name}")
-    public ResponseEntity<byte[]> getThumbnail(@PathVariable String name) {
-        ThumbnailService.CachedThumbnail thumbnail = thumbnailService.getThumbnail(name);
-        if (thumbnail != null) {
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(thumbnail.contentType()))
-                    .body(thumbnail.content());
-        } else {
+        ThumbnailService.CachedThumbnail thumbnail = null;
+        if (width != null && acceptsType(accepted, MediaType.IMAGE_JPEG)) {
+            thumbnail = thumbnailService.getThumbnailVariant(name, width);
+        }
+        if (thumbnail == null) {
+            thumbnail = thumbnailService.getThumbnail(name);
+        }
+        if (thumbnail == null) {
             return ResponseEntity.notFound().build();
         }
+        MediaType contentType = MediaType.parseMediaType(thumbnail.contentType());
+        if (!acceptsType(accepted, contentType)) {
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE).build();
+        }
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(thumbnail.content());
     }
 
-    private ResponseEntity<Resource> getFileAsResource(String directory, String fileName) {
-        try {
-            Path filePath = Paths.get(directory).resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
+    private static boolean acceptsType(List<MediaType> accepted, MediaType type) {
+        return accepted.stream().anyMatch(range -> range.includes(type));
+    }
 
-            if (resource.exists() || resource.isReadable()) {
-                String contentType = Files.probeContentType(filePath);
-                if (contentType == null) {
-                    contentType = "application/octet-stream";
-                }
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (IOException e) {
-            return ResponseEntity.internalServerError().build();
+    private void serveFile(String directory, String fileName, HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        Path filePath = root.resolve(fileName).normalize();
+        if (!filePath.startsWith(root)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        mediaFileService.serve(filePath, request, response);
     }
-}
\ No newline at end of file
+}
@@ -1,41 +1,213 @@
 package com.group17.lilyoutube_server.crdt;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Thread-safe grow-only counter. Replica names are interned to slots of an
+ * {@link AtomicLongArray}; the total is cached and kept up to date on every
+ * increment and merge, so reading it is O(1).
+ * <p>
+ * The slot array grows when a new replica appears. Growing marks every old slot as
+ * {@link #MOVED} while copying it, and writers that hit a moved slot retry on the new
+ * array, so no update is lost.
+ */
 public class GCounter {
-    private final Map<String, Long> counters;
+
+    private static final long MOVED = Long.MIN_VALUE;
+
+    private final ReplicaIds replicaIds;
+    private volatile AtomicLongArray slots;
+    private final AtomicLong total = new AtomicLong();
+    private final Object growLock = new Object();
+    // Values already handed out by extractDelta, guarded by this
+    private long[] shipped = new long[0];
 
     public GCounter() {
-        this.counters = new HashMap<>();
+        this(ReplicaIds.shared());
     }
 
+    public GCounter(ReplicaIds replicaIds) {
+        this.replicaIds = replicaIds;
+        this.slots = new AtomicLongArray(Math.max(1, replicaIds.size()));
+    }
+
+    /**
+     * Counter holding a replica -> count map. The names are interned in a registry of its
+     * own, since they may come from peers and the shared one is only meant for known replicas.
+     */
     public GCounter(Map<String, Long> counters) {
-        this.counters = new HashMap<>(counters);
+        this(new ReplicaIds());
+        merge(counters);
     }
 
     public void increment(String replicaId, long delta) {
         if (delta < 0) {
             throw new IllegalArgumentException("Counter delta must be positive");
         }
-        counters.put(replicaId, counters.getOrDefault(replicaId, 0L) + delta);
+        int index = replicaIds.indexOf(replicaId);
+        while (true) {
+            AtomicLongArray current = slotsFor(index);
+            long value = current.get(index);
+            if (value == MOVED) {
+                awaitGrow(current);
+                continue;
+            }
+            if (current.compareAndSet(index, value, value + delta)) {
+                total.addAndGet(delta);
+                return;
+            }
+        }
     }
 
     public void merge(GCounter other) {
-        for (Map.Entry<String, Long> entry : other.counters.entrySet()) {
-            String replicaId = entry.getKey();
-            Long otherValue = entry.getValue();
-            Long localValue = counters.getOrDefault(replicaId, 0L);
-            counters.put(replicaId, Math.max(localValue, otherValue));
+        long[] values = other.snapshot();
+        for (int i = 0; i < values.length; i++) {
+            long value = values[i];
+            if (value > 0) {
+                mergeSlot(other.replicaIds == replicaIds ? i : replicaIds.indexOf(other.replicaIds.nameOf(i)), value);
+            }
+        }
+    }
+
+    /**
+     * Merges a replica -> count map, keeping the maximum per replica.
+     *
+     * @return true if any replica's value advanced
+     */
+    public boolean merge(Map<String, Long> counters) {
+        boolean advanced = false;
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            if (entry.getValue() != null && entry.getValue() > 0) {
+                advanced |= mergeSlot(replicaIds.indexOf(entry.getKey()), entry.getValue());
+            }
+        }
+        return advanced;
+    }
+
+    private boolean mergeSlot(int index, long value) {
+        while (true) {
+            AtomicLongArray current = slotsFor(index);
+            long local = current.get(index);
+            if (local == MOVED) {
+                awaitGrow(current);
+                continue;
+            }
+            if (value <= local) {
+                return false;
+            }
+            if (current.compareAndSet(index, local, value)) {
+                total.addAndGet(value - local);
+                return true;
+            }
         }
     }
 
     public long getValue() {
-        return counters.values().stream().mapToLong(Long::longValue).sum();
+        return total.get();
+    }
+
+    public long get(String replicaId) {
+        int index = replicaIds.indexOf(replicaId);
+        long[] values = snapshot();
+        return index < values.length ? values[index] : 0L;
     }
 
     public Map<String, Long> getCounters() {
-        return new HashMap<>(counters);
+        long[] values = snapshot();
+        Map<String, Long> counters = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            long value = values[i];
+            if (value > 0) {
+                counters.put(replicaIds.nameOf(i), value);
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * How much each replica advanced since the previous call, as increments rather than
+     * absolute values, so the result can be applied with HINCRBY on top of whatever the
+     * store already holds. Pair with {@link #restoreDelta(Map)} if the delta could not be
+     * delivered.
+     */
+    public synchronized Map<String, Long> extractDelta() {
+        long[] values = snapshot();
+        if (shipped.length < values.length) {
+            shipped = Arrays.copyOf(shipped, values.length);
+        }
+        Map<String, Long> delta = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            long value = values[i];
+            if (value > shipped[i]) {
+                delta.put(replicaIds.nameOf(i), value - shipped[i]);
+                shipped[i] = value;
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Hands an undelivered delta back, so the next {@link #extractDelta()} includes it again.
+     */
+    public synchronized void restoreDelta(Map<String, Long> delta) {
+        for (Map.Entry<String, Long> entry : delta.entrySet()) {
+            int index = replicaIds.indexOf(entry.getKey());
+            if (index < shipped.length) {
+                shipped[index] = Math.max(0, shipped[index] - entry.getValue());
+            }
+        }
+    }
+
+    private AtomicLongArray slotsFor(int index) {
+        AtomicLongArray current = slots;
+        if (index < current.length()) {
+            return current;
+        }
+        grow(index + 1);
+        return slots;
+    }
+
+    /**
+     * Per-slot values; retried if a grow is copying the array underneath.
+     */
+    private long[] snapshot() {
+        outer:
+        while (true) {
+            AtomicLongArray current = slots;
+            long[] values = new long[current.length()];
+            for (int i = 0; i < values.length; i++) {
+                long value = current.get(i);
+                if (value == MOVED) {
+                    awaitGrow(current);
+                    continue outer;
+                }
+                values[i] = value;
+            }
+            return values;
+        }
+    }
+
+    private void grow(int minLength) {
+        synchronized (growLock) {
+            AtomicLongArray old = slots;
+            if (old.length() >= minLength) {
+                return;
+            }
+            AtomicLongArray grown = new AtomicLongArray(Math.max(minLength, replicaIds.size()));
+            for (int i = 0; i < old.length(); i++) {
+                grown.set(i, old.getAndSet(i, MOVED));
+            }
+            slots = grown;
+        }
+    }
+
+    private void awaitGrow(AtomicLongArray stale) {
+        while (slots == stale) {
+            Thread.onSpinWait();
+        }
     }
 }
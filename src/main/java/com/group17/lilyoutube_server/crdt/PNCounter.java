@@ -0,0 +1,92 @@
+package com.group17.lilyoutube_server.crdt;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counter that can go up and down, built from two {@link GCounter}s: one for
+ * increments and one for decrements. Its flattened form prefixes the replica
+ * names with {@link #INCREMENT_PREFIX} / {@link #DECREMENT_PREFIX}, so it can be
+ * stored and merged field-by-field exactly like a GCounter hash.
+ */
+public class PNCounter {
+
+    public static final String INCREMENT_PREFIX = "p:";
+    public static final String DECREMENT_PREFIX = "n:";
+
+    private final GCounter increments;
+    private final GCounter decrements;
+
+    public PNCounter() {
+        this(ReplicaIds.shared());
+    }
+
+    public PNCounter(ReplicaIds replicaIds) {
+        this.increments = new GCounter(replicaIds);
+        this.decrements = new GCounter(replicaIds);
+    }
+
+    /**
+     * Counter holding a flattened field map. The replica names come from Redis, where any
+     * peer can add one, so they are interned in a registry of their own rather than the
+     * shared one.
+     */
+    public static PNCounter fromFields(Map<String, Long> fields) {
+        PNCounter counter = new PNCounter(new ReplicaIds());
+        counter.mergeFields(fields);
+        return counter;
+    }
+
+    public static String incrementField(String replicaId) {
+        return INCREMENT_PREFIX + replicaId;
+    }
+
+    public static String decrementField(String replicaId) {
+        return DECREMENT_PREFIX + replicaId;
+    }
+
+    public void increment(String replicaId, long delta) {
+        increments.increment(replicaId, delta);
+    }
+
+    public void decrement(String replicaId, long delta) {
+        decrements.increment(replicaId, delta);
+    }
+
+    public void merge(PNCounter other) {
+        increments.merge(other.increments);
+        decrements.merge(other.decrements);
+    }
+
+    /**
+     * Merges a flattened field map; fields without a known prefix are ignored.
+     *
+     * @return true if any field advanced
+     */
+    public boolean mergeFields(Map<String, Long> fields) {
+        Map<String, Long> p = new HashMap<>();
+        Map<String, Long> n = new HashMap<>();
+        for (Map.Entry<String, Long> field : fields.entrySet()) {
+            String name = field.getKey();
+            if (name.startsWith(INCREMENT_PREFIX)) {
+                p.put(name.substring(INCREMENT_PREFIX.length()), field.getValue());
+            } else if (name.startsWith(DECREMENT_PREFIX)) {
+                n.put(name.substring(DECREMENT_PREFIX.length()), field.getValue());
+            }
+        }
+        boolean advanced = increments.merge(p);
+        advanced |= decrements.merge(n);
+        return advanced;
+    }
+
+    public long getValue() {
+        return increments.getValue() - decrements.getValue();
+    }
+
+    public Map<String, Long> toFields() {
+        Map<String, Long> fields = new HashMap<>();
+        increments.getCounters().forEach((replica, value) -> fields.put(incrementField(replica), value));
+        decrements.getCounters().forEach((replica, value) -> fields.put(decrementField(replica), value));
+        return fields;
+    }
+}
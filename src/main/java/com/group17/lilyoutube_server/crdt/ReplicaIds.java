@@ -0,0 +1,61 @@
+package com.group17.lilyoutube_server.crdt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Interns replica names to dense slot indexes shared by all counters, so each
+ * counter can store its per-replica values in a flat array.
+ * <p>
+ * Names are never released, so a registry is bounded. The shared one is meant for
+ * the configured replicas only; names supplied by peers go to a registry that lives
+ * only as long as the counters using it.
+ */
+public final class ReplicaIds {
+
+    static final int MAX_SHARED_NAMES = 64;
+
+    private static final ReplicaIds SHARED = new ReplicaIds(MAX_SHARED_NAMES);
+
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private final List<String> names = new CopyOnWriteArrayList<>();
+    private final int maxNames;
+
+    public ReplicaIds() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public ReplicaIds(int maxNames) {
+        this.maxNames = maxNames;
+    }
+
+    public static ReplicaIds shared() {
+        return SHARED;
+    }
+
+    public int indexOf(String replicaId) {
+        Integer index = indexes.get(replicaId);
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            return indexes.computeIfAbsent(replicaId, k -> {
+                if (names.size() >= maxNames) {
+                    throw new IllegalStateException("More than " + maxNames + " replica ids");
+                }
+                names.add(k);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    public String nameOf(int index) {
+        return names.get(index);
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,11 @@
+package com.group17.lilyoutube_server.dto;
+
+import lombok.Data;
+
+@Data
+public class CreateUploadDTO {
+    private String filename;
+    private Long length;
+    // Optional; the server default is used when absent
+    private Integer chunkSize;
+}
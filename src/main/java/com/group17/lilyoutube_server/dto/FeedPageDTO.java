@@ -0,0 +1,16 @@
+package com.group17.lilyoutube_server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedPageDTO {
+    private List<PostDTO> items;
+    // null when there are no more posts
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package com.group17.lilyoutube_server.dto;
+
+import com.group17.lilyoutube_server.service.TranscodingJobQueue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TranscodingStatusDTO {
+    // Jobs waiting to be taken, not counting retries that are still backing off
+    private long queueLength;
+    // Jobs that used up their attempts; requeue by moving them back to the queue list
+    private long deadLetters;
+    private List<TranscodingJobQueue.JobProgress> jobs;
+}
@@ -0,0 +1,22 @@
+package com.group17.lilyoutube_server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionDTO {
+    private String id;
+    private String filename;
+    private long length;
+    private int chunkSize;
+    private int chunkCount;
+    // Bytes covered by the chunks received so far
+    private long bytesReceived;
+    // Chunk indexes still to be uploaded, in ascending order
+    private List<Integer> missingChunks;
+}
@@ -13,4 +13,10 @@ public class ViewSyncDTO {
     // videoId -> (replicaName -> counterValue)
     private Map<Long, Map<String, Long>> videoViews;
     private String sourceReplicaName;
+    // Change-log version of the source replica this state is current up to
+    private Long version;
+    // false when only videos changed since the requested version are included
+    private boolean full;
+    // postId -> ("p:"/"n:" + replicaName -> counterValue), the like PN-counters
+    private Map<Long, Map<String, Long>> postLikes;
 }
@@ -9,7 +9,9 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
-@Table(name = "posts")
+@Table(name = "posts", indexes = {
+    @Index(name = "idx_posts_created_id", columnList = "created_at,id")
+})
 @Data
 public class Post {
     @Id
@@ -49,6 +51,10 @@ public class Post {
     @Column(nullable = false)
     private long likesCount = 0;
 
+    // Likes counted before the per-replica PN-counters; likesCount = likesBase + merged counter value
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long likesBase = 0;
+
     @Column(nullable = false)
     private long commentsCount = 0;
 
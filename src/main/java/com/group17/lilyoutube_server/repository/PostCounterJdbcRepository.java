@@ -0,0 +1,66 @@
+package com.group17.lilyoutube_server.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class PostCounterJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Writes many merged view totals in a single UPDATE ... FROM (VALUES ...) statement.
+     * A row is only touched when the new total is higher, so replicas flushing slightly
+     * different merges never move a count backwards.
+     *
+     * @return number of rows actually updated
+     */
+    public int updateViewsCounts(Map<Long, Long> totals) {
+        if (totals.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder("UPDATE posts p SET views_count = v.views FROM (VALUES ");
+        Object[] args = new Object[totals.size() * 2];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : totals.entrySet()) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(?::bigint, ?::bigint)");
+            args[i++] = entry.getKey();
+            args[i++] = entry.getValue();
+        }
+        sql.append(") AS v(id, views) WHERE p.id = v.id AND p.views_count < v.views");
+        return jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * Writes many like totals as likes_base + the merged PN-counter value. Unlike views the
+     * count can go down, so rows are only skipped when the value is already current.
+     *
+     * @return number of rows actually updated
+     */
+    public int updateLikesCounts(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder(
+                "UPDATE posts p SET likes_count = GREATEST(0, p.likes_base + v.likes) FROM (VALUES ");
+        Object[] args = new Object[deltas.size() * 2];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(?::bigint, ?::bigint)");
+            args[i++] = entry.getKey();
+            args[i++] = entry.getValue();
+        }
+        sql.append(") AS v(id, likes) WHERE p.id = v.id AND p.likes_count <> GREATEST(0, p.likes_base + v.likes)");
+        return jdbcTemplate.update(sql.toString(), args);
+    }
+}
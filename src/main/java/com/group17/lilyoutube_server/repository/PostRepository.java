@@ -2,12 +2,14 @@ package com.group17.lilyoutube_server.repository;
 
 import com.group17.lilyoutube_server.model.Post;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,7 +18,12 @@ public interface PostRepository extends JpaRepository<Post, Long> {
 
     Optional<Post> findByVideoPath(String videoPath);
 
-    List<Post> findAllByOrderByCreatedAtDesc();
+    @Query("SELECT p FROM Post p ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findFeedFirstPage(Pageable pageable);
+
+    @Query("SELECT p FROM Post p WHERE p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<Post> findFeedPageAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
 
     @Modifying
     @Transactional
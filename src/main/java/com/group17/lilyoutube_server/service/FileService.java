@@ -1,59 +1,132 @@
 package com.group17.lilyoutube_server.service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class FileService {
 
+    private static final int STREAM_CHUNK_BYTES = 1 << 20;
+    private static final String PARTIAL_SUFFIX = ".part";
+
     @Value("${app.upload.timeout-ms:60000}")
     private long uploadTimeoutMs;
 
+    @Value("${app.upload.max-bytes:209715200}")
+    private long maxUploadBytes;
+
+    private final MeterRegistry meterRegistry;
+    // Bytes received so far by uploads that are still being written
+    private final AtomicLong bytesInProgress = new AtomicLong();
+
+    public FileService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("app.upload.in.progress.bytes", bytesInProgress);
+    }
+
+    /**
+     * Stores a multipart upload. Spring has already spooled the part to a temp file, so
+     * it is moved into place (a rename on the same file system) instead of being copied
+     * through the heap a second time. The body has been received in full by then, so
+     * app.upload.timeout-ms does not apply; it only bounds {@link #saveStream}.
+     */
     public String saveFile(MultipartFile file, String targetDir) throws IOException {
         if (file.isEmpty()) {
             throw new IOException("File is empty");
         }
 
-        File dir = new File(targetDir);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-
-        UUID uuid = UUID.randomUUID();
-        String extension = getFileExtension(Objects.requireNonNull(file.getOriginalFilename()));
-        String newFileName = uuid + (extension.isEmpty() ? "" : "." + extension);
-        File targetFile = new File(targetDir + "/" + newFileName);
+        String newFileName = newFileName(Objects.requireNonNull(file.getOriginalFilename()));
+        Path targetFile = prepareDir(targetDir).resolve(newFileName);
 
-        try (InputStream inputStream = file.getInputStream();
-                FileOutputStream outputStream = new FileOutputStream(targetFile)) {
+        long startNanos = System.nanoTime();
+        try {
+            // transferTo(File) reaches Part.write, which renames the spooled file; it needs
+            // an absolute path, otherwise it resolves against the multipart temp location
+            file.transferTo(targetFile.toAbsolutePath().toFile());
+            recordUpload("multipart", file.getSize(), startNanos);
+            return newFileName;
+        } catch (IOException e) {
+            Files.deleteIfExists(targetFile);
+            throw e;
+        }
+    }
 
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            long startTime = System.currentTimeMillis();
+    /**
+     * Writes a raw request body straight to its final location: 1 MB chunks go to a
+     * {@link FileChannel} under a temporary name, which is renamed once the body is
+     * complete so readers never see a partial file. The timeout covers the whole body.
+     */
+    public String saveStream(InputStream body, String originalFilename, String targetDir) throws IOException {
+        String newFileName = newFileName(Objects.requireNonNull(originalFilename));
+        Path dir = prepareDir(targetDir);
+        Path targetFile = dir.resolve(newFileName);
+        Path partialFile = dir.resolve(newFileName + PARTIAL_SUFFIX);
 
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                if (System.currentTimeMillis() - startTime > uploadTimeoutMs) {
+        long startNanos = System.nanoTime();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(partialFile,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            byte[] chunk = new byte[STREAM_CHUNK_BYTES];
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            int read;
+            while ((read = body.readNBytes(chunk, 0, chunk.length)) > 0) {
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) > uploadTimeoutMs) {
                     throw new IOException("Upload timed out");
                 }
-                outputStream.write(buffer, 0, bytesRead);
+                if (written + read > maxUploadBytes) {
+                    throw new IOException("Upload exceeds " + maxUploadBytes + " bytes");
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                written += read;
+                bytesInProgress.addAndGet(read);
             }
-
-            return newFileName;
-
-        } catch (IOException e) {
-            if (targetFile.exists()) {
-                targetFile.delete();
+            if (written == 0) {
+                throw new IOException("File is empty");
             }
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(partialFile);
             throw e;
+        } finally {
+            bytesInProgress.addAndGet(-written);
         }
+
+        moveIntoPlace(partialFile, targetFile);
+        recordUpload("stream", written, startNanos);
+        return newFileName;
+    }
+
+    /**
+     * Moves an already complete file into {@code targetDir} under a new name; a rename
+     * when both are on the same file system.
+     */
+    public String moveFile(Path source, String originalFilename, String targetDir) throws IOException {
+        String newFileName = newFileName(Objects.requireNonNull(originalFilename));
+        moveIntoPlace(source, prepareDir(targetDir).resolve(newFileName));
+        return newFileName;
     }
 
     public void deleteFile(String filePath) {
@@ -63,6 +136,39 @@ public class FileService {
         }
     }
 
+    private void recordUpload(String mode, long bytes, long startNanos) {
+        long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+        Timer.builder("app.upload.duration").tag("mode", mode).register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("app.upload.bytes", "mode", mode).increment(bytes);
+        DistributionSummary.builder("app.upload.throughput").baseUnit("bytes_per_second").tag("mode", mode)
+                .register(meterRegistry)
+                .record(bytes * 1e9 / elapsedNanos);
+    }
+
+    private static Path prepareDir(String targetDir) throws IOException {
+        Path dir = Paths.get(targetDir);
+        Files.createDirectories(dir);
+        return dir;
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+
+    private String newFileName(String originalFilename) {
+        String extension = getFileExtension(originalFilename);
+        // The name comes from the client; anything but a plain extension is dropped
+        if (!extension.chars().allMatch(Character::isLetterOrDigit)) {
+            extension = "";
+        }
+        return UUID.randomUUID() + (extension.isEmpty() ? "" : "." + extension);
+    }
+
     private String getFileExtension(String name) {
         int lastIndexOf = name.lastIndexOf(".");
         if (lastIndexOf == -1) {
@@ -0,0 +1,120 @@
+package com.group17.lilyoutube_server.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.group17.lilyoutube_server.util.HlsPlaylist;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+/**
+ * Parsed playlists for scheduled premieres and for videos that are still being
+ * transcoded. Each playlist is read and parsed once per modification time (checked at
+ * most once a second), and rendered live windows are
+ * cached by the segments they contain, so every viewer on the same media sequence gets
+ * the same bytes. Both caches load through Caffeine, which makes them single-flight:
+ * concurrent misses for one key wait for the first loader instead of repeating it.
+ */
+@Service
+@Slf4j
+public class HlsPlaylistService {
+
+    private static final long RECHECK_NANOS = Duration.ofSeconds(1).toNanos();
+
+    // inProgress is the rendered playlist while the encoder is still appending to it, else null
+    private record ParsedPlaylist(FileTime modified, long checkedAtNanos, HlsPlaylist playlist, byte[] inProgress) {
+    }
+
+    private record WindowKey(Path playlist, FileTime modified, HlsPlaylist.Window window) {
+    }
+
+    private final Cache<Path, ParsedPlaylist> parsed;
+    private final Cache<WindowKey, byte[]> windows;
+
+    public HlsPlaylistService(MeterRegistry meterRegistry) {
+        this.parsed = Caffeine.newBuilder()
+                .maximumSize(1_000)
+                .expireAfterAccess(Duration.ofMinutes(30))
+                .recordStats()
+                .build();
+        // A window is live for one segment duration, so entries only need to outlive that
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(Duration.ofSeconds(30))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, parsed, "hls.playlist.parsed");
+        CaffeineCacheMetrics.monitor(meterRegistry, windows, "hls.playlist.window");
+    }
+
+    /**
+     * The live window for a premiere {@code secondsSinceStart} in, or null when the
+     * playlist file does not exist.
+     */
+    public byte[] renderLiveWindow(Path playlistPath, long secondsSinceStart, int windowSize) throws IOException {
+        try {
+            ParsedPlaylist current = load(playlistPath);
+            if (current == null) {
+                return null;
+            }
+            HlsPlaylist playlist = current.playlist();
+            HlsPlaylist.Window window = playlist.windowAt(secondsSinceStart, windowSize);
+            return windows.get(new WindowKey(playlistPath, current.modified(), window),
+                    key -> playlist.render(key.window()).getBytes(StandardCharsets.UTF_8));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * The playlist as written so far when its transcoding is still running, or null when
+     * it is finished (or a master playlist, or missing) and can be served as a plain file.
+     */
+    public byte[] renderInProgress(Path playlistPath) throws IOException {
+        try {
+            ParsedPlaylist current = load(playlistPath);
+            return current != null ? current.inProgress() : null;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ParsedPlaylist load(Path playlistPath) {
+        ParsedPlaylist cached = parsed.getIfPresent(playlistPath);
+        if (cached != null && System.nanoTime() - cached.checkedAtNanos() < RECHECK_NANOS) {
+            return cached;
+        }
+        // compute() serialises reloads of the same playlist
+        return parsed.asMap().compute(playlistPath, (path, previous) -> {
+            if (previous != null && System.nanoTime() - previous.checkedAtNanos() < RECHECK_NANOS) {
+                return previous;
+            }
+            try {
+                FileTime modified = Files.getLastModifiedTime(path);
+                if (previous != null && previous.modified().equals(modified)) {
+                    return new ParsedPlaylist(modified, System.nanoTime(), previous.playlist(), previous.inProgress());
+                }
+                HlsPlaylist playlist = HlsPlaylist.parse(Files.readAllLines(path));
+                log.debug("Parsed playlist {} ({} segments)", path.getFileName(), playlist.segmentCount());
+                // Rendered once per change: the encoder rewrites the file once per segment
+                byte[] inProgress = playlist.isEnded() || playlist.isMaster() ? null
+                        : playlist.renderInProgress().getBytes(StandardCharsets.UTF_8);
+                return new ParsedPlaylist(modified, System.nanoTime(), playlist, inProgress);
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.group17.lilyoutube_server.service;
+
+import com.group17.lilyoutube_server.crdt.PNCounter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-replica like counts, kept as a {@link PNCounter} hash per post in Redis
+ * ({@code post_likes:{id}}, fields {@code p:<replica>} / {@code n:<replica>}).
+ * Writes go through the {@link ViewChangeLog} so they are shipped to peers and
+ * checkpointed to posts.likes_count together with the view counters.
+ */
+@Service
+@RequiredArgsConstructor
+public class LikeCounterService {
+
+    public static final String KEY_PREFIX = "post_likes:";
+
+    private final ViewChangeLog viewChangeLog;
+    private final ViewCountResolver viewCountResolver;
+
+    @Value("${app.replica-name}")
+    private String replicaName;
+
+    public static String key(Long postId) {
+        return KEY_PREFIX + postId;
+    }
+
+    public void like(Long postId) {
+        viewChangeLog.increment(key(postId), PNCounter.incrementField(replicaName), 1, postId);
+    }
+
+    public void unlike(Long postId) {
+        viewChangeLog.increment(key(postId), PNCounter.decrementField(replicaName), 1, postId);
+    }
+
+    /**
+     * Raw PN-counter fields per post; posts without any like activity map to an empty map.
+     */
+    public Map<Long, Map<String, Long>> resolveFields(Collection<Long> postIds) {
+        return viewCountResolver.resolveHashes(postIds, LikeCounterService::key);
+    }
+
+    /**
+     * Net like delta per post, only for posts that have PN-counter state.
+     */
+    public Map<Long, Long> resolveDeltas(Collection<Long> postIds) {
+        Map<Long, Long> deltas = new HashMap<>();
+        resolveFields(postIds).forEach((postId, fields) -> {
+            if (!fields.isEmpty()) {
+                deltas.put(postId, PNCounter.fromFields(fields).getValue());
+            }
+        });
+        return deltas;
+    }
+}
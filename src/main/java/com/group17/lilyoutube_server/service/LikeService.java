@@ -10,6 +10,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
 @Service
@@ -18,6 +20,7 @@ public class LikeService {
     private final LikeRepository likeRepository;
     private final PostRepository postRepository;
     private final UserRepository userRepository;
+    private final LikeCounterService likeCounterService;
 
     @Transactional
     public void likePost(Long postId, String userEmail) {
@@ -31,7 +34,7 @@ public class LikeService {
         }
 
         likeRepository.save(new PostLike(user, post));
-        postRepository.incrementLikesCount(post.getId());
+        afterCommit(() -> likeCounterService.like(post.getId()));
     }
 
     @Transactional
@@ -43,12 +46,27 @@ public class LikeService {
 
         if (likeRepository.existsByUserIdAndPostId(user.getId(), post.getId())) {
             likeRepository.deleteByUserIdAndPostId(user.getId(), post.getId());
-            postRepository.decrementLikesCount(post.getId());
+            afterCommit(() -> likeCounterService.unlike(post.getId()));
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not liked by user");
         }
     }
 
+    // Counters are only touched once the like row is committed, so a rolled-back
+    // like never shows up in the count
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     public boolean isLikedByUser(Long postId, String userEmail) {
         User user = userRepository.findByEmail(userEmail).orElse(null);
         if (user == null)
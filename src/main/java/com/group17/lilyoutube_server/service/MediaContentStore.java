@@ -0,0 +1,161 @@
+package com.group17.lilyoutube_server.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Content-addressed index of stored media. Each distinct file (by SHA-256) is kept once
+ * per kind; later uploads of the same bytes are pointed at the first stored name, with a
+ * reference count so the entry goes away once no post uses it.
+ * <p>
+ * The files are on the media volume all replicas share, but the index lives in this
+ * replica's own Redis. Duplicates are therefore only found among uploads that went
+ * through the same replica; a copy uploaded through another one is stored and
+ * transcoded again, which costs space but nothing else. Likewise a post deleted through
+ * another replica does not release its entry here; the entry only keeps pointing at
+ * files that are still on the volume.
+ */
+@Service
+@Slf4j
+public class MediaContentStore {
+
+    public enum Kind { VIDEO, THUMBNAIL }
+
+    private static final String CONTENT_PREFIX = "media_content:";
+    private static final String NAME_PREFIX = "media_content_name:";
+    private static final int HASH_BUFFER_BYTES = 1 << 20;
+
+    // KEYS[1] = content hash, KEYS[2] = reverse entry of the candidate name; ARGV[1] = name,
+    // ARGV[2] = content key, ARGV[3] = stored name the caller checked as reusable, or ''.
+    // Returns the stored name, which is ARGV[1] when the content is new, or '' when the
+    // stored name is not the checked one and the upload has to be kept as is.
+    private static final RedisScript<String> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local existing = redis.call('HGET', KEYS[1], 'name') " +
+            "if existing then " +
+            "  if existing ~= ARGV[3] then return '' end " +
+            "  redis.call('HINCRBY', KEYS[1], 'refs', 1) " +
+            "  return existing " +
+            "end " +
+            "redis.call('HSET', KEYS[1], 'name', ARGV[1], 'refs', 1) " +
+            "redis.call('SET', KEYS[2], ARGV[2]) " +
+            "return ARGV[1]",
+            String.class);
+
+    // KEYS[1] = reverse entry of the name. Returns the remaining references, -1 if unknown.
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local content = redis.call('GET', KEYS[1]) " +
+            "if not content then return -1 end " +
+            "local refs = redis.call('HINCRBY', content, 'refs', -1) " +
+            "if refs <= 0 then " +
+            "  redis.call('DEL', content, KEYS[1]) " +
+            "end " +
+            "return refs",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public MediaContentStore(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public record Stored(String name, boolean duplicate) {
+    }
+
+    /**
+     * Registers a freshly stored file under {@code name}, the name posts will reference
+     * (the playlist for videos). If the same content is already stored and
+     * {@code reusable} accepts the stored name, the new copy is deleted and the existing
+     * name returned with {@code duplicate} set. Otherwise the upload is kept under its own
+     * name without an index entry, since the index already points at the first copy.
+     * Hashes the whole file, so callers should not hold a transaction open around it.
+     */
+    public Stored deduplicate(Kind kind, Path file, String name, Predicate<String> reusable) throws IOException {
+        String contentKey = CONTENT_PREFIX + kind.name().toLowerCase() + ":" + sha256(file);
+        String stored;
+        try {
+            Object existing = redisTemplate.opsForHash().get(contentKey, "name");
+            if (existing != null && !reusable.test((String) existing)) {
+                meterRegistry.counter("app.media.dedup", "kind", kind.name(), "result", "not_reusable").increment();
+                log.info("Upload {} has the same content as {}, which is not ready to reuse", name, existing);
+                return new Stored(name, false);
+            }
+            stored = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(contentKey, NAME_PREFIX + name),
+                    name, contentKey, existing != null ? (String) existing : "");
+        } catch (RuntimeException e) {
+            // Dedup is an optimisation; without the index the upload is simply kept as is
+            log.warn("Content index unavailable, storing {} without dedup: {}", name, e.getMessage());
+            return new Stored(name, false);
+        }
+        if (stored == null || stored.isEmpty() || stored.equals(name)) {
+            // Empty: the entry changed since it was checked, so keep this copy
+            meterRegistry.counter("app.media.dedup", "kind", kind.name(), "result", "new").increment();
+            return new Stored(name, false);
+        }
+        Files.deleteIfExists(file);
+        meterRegistry.counter("app.media.dedup", "kind", kind.name(), "result", "duplicate").increment();
+        log.info("Upload {} is a duplicate of {}, reusing it", name, stored);
+        return new Stored(stored, true);
+    }
+
+    /**
+     * Drops one reference to a stored name; unknown names are ignored, and so is an
+     * unavailable index, like in {@link #deduplicate}: callers release on cleanup paths
+     * that must not fail because of it.
+     *
+     * @return the references left, 0 when this was the last one, or -1 when the name is
+     *         not in the index or the index could not be reached
+     */
+    public long release(String name) {
+        if (name == null) {
+            return -1;
+        }
+        try {
+            Long refs = redisTemplate.execute(RELEASE_SCRIPT, List.of(NAME_PREFIX + name));
+            return refs != null ? refs : -1;
+        } catch (RuntimeException e) {
+            // The entry keeps its reference and only ever points at a file that is kept
+            log.warn("Content index unavailable, could not release {}: {}", name, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * SHA-256 of a file in one sequential pass; the file was just written, so this is
+     * normally served from the page cache.
+     */
+    static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_BYTES);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
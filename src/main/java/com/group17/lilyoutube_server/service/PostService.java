@@ -1,17 +1,19 @@
 package com.group17.lilyoutube_server.service;
 
+import com.group17.lilyoutube_server.dto.FeedPageDTO;
 import com.group17.lilyoutube_server.dto.PostDTO;
 import com.group17.lilyoutube_server.model.Post;
 import com.group17.lilyoutube_server.model.User;
-import com.group17.lilyoutube_server.model.VideoView;
 import com.group17.lilyoutube_server.repository.UserRepository;
 import com.group17.lilyoutube_server.repository.PostRepository;
 import com.group17.lilyoutube_server.repository.LikeRepository;
-import com.group17.lilyoutube_server.repository.VideoViewRepository;
+import com.group17.lilyoutube_server.util.FeedCursor;
 import com.group17.lilyoutube_server.util.mappers.PostMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import com.group17.lilyoutube_server.config.ServerConstants;
 import com.group17.lilyoutube_server.config.RabbitConfig;
@@ -20,38 +22,91 @@ import com.group17.lilyoutube_server.proto.UploadEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class PostService {
     private final PostRepository postRepository;
     private final UserRepository userRepository;
     private final LikeRepository likeRepository;
-    private final VideoViewRepository videoViewRepository;
     private final FileService fileService;
     private final VideoTranscodingService transcodingService;
 
+    private final ViewCountResolver viewCountResolver;
+    private final LikeCounterService likeCounterService;
+    private final ViewEventBuffer viewEventBuffer;
+    private final ViewCounterCoalescer viewCounterCoalescer;
+    private final ViewChangeLog viewChangeLog;
+    private final PremiereScheduleCache premiereScheduleCache;
+    private final MediaContentStore mediaContentStore;
+    private final ThumbnailService thumbnailService;
+
     private final PostMapper postMapper;
     private final RabbitTemplate rabbitTemplate;
     private final ObjectMapper objectMapper;
-
-    private final org.springframework.data.redis.core.StringRedisTemplate redisTemplate;
+    private final TransactionTemplate transactionTemplate;
 
     @org.springframework.beans.factory.annotation.Value("${app.replica-name}")
     private String replicaName;
 
+    @org.springframework.beans.factory.annotation.Value("${app.feed.default-page-size:20}")
+    private int defaultFeedPageSize;
+
+    @org.springframework.beans.factory.annotation.Value("${app.feed.max-page-size:100}")
+    private int maxFeedPageSize;
+
+    /**
+     * Compatibility wrapper for the old unpaginated listing: returns only the newest
+     * page of the feed, so the response no longer grows with the catalogue.
+     */
     public List<PostDTO> getAllPosts() {
-        return postRepository.findAllByOrderByCreatedAtDesc().stream()
+        return getFeed(null, maxFeedPageSize).getItems();
+    }
+
+    public FeedPageDTO getFeed(String cursor, Integer size) {
+        int pageSize = size == null ? defaultFeedPageSize : Math.max(1, Math.min(size, maxFeedPageSize));
+
+        // Fetch one extra row to know whether another page exists
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<Post> posts;
+        if (cursor == null || cursor.isBlank()) {
+            posts = postRepository.findFeedFirstPage(limit);
+        } else {
+            FeedCursor position = FeedCursor.decode(cursor);
+            posts = postRepository.findFeedPageAfter(position.createdAt(), position.id(), limit);
+        }
+
+        boolean hasMore = posts.size() > pageSize;
+        if (hasMore) {
+            posts = posts.subList(0, pageSize);
+        }
+
+        List<Long> ids = posts.stream().map(Post::getId).collect(Collectors.toList());
+        Map<Long, Long> viewCounts = viewCountResolver.resolveTotals(ids);
+        Map<Long, Long> likeDeltas = likeCounterService.resolveDeltas(ids);
+
+        List<PostDTO> items = posts.stream()
                 .map(post -> {
                     PostDTO dto = postMapper.toDto(post);
-                    dto.setViewsCount(getMergedViewCountFromRedis(post.getId()));
+                    dto.setViewsCount(viewCounts.getOrDefault(post.getId(), 0L));
+                    applyLikes(dto, post, likeDeltas.get(post.getId()));
                     return dto;
                 })
                 .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (hasMore) {
+            Post last = posts.get(posts.size() - 1);
+            nextCursor = new FeedCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new FeedPageDTO(items, nextCursor);
     }
 
     public PostDTO getPostById(Long id) {
@@ -59,60 +114,122 @@ public class PostService {
         if (post == null)
             return null;
         PostDTO dto = postMapper.toDto(post);
-        dto.setViewsCount(getMergedViewCountFromRedis(id));
+        dto.setViewsCount(viewCountResolver.resolveTotal(id));
+        applyLikes(dto, post, likeCounterService.resolveDeltas(List.of(id)).get(id));
         return dto;
     }
 
-    private Long getMergedViewCountFromRedis(Long videoId) {
-        String key = "video_views:" + videoId;
-        java.util.Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
-        return entries.values().stream()
-                .mapToLong(v -> Long.parseLong(v.toString()))
-                .sum();
+    // The stored likes_count lags behind by one checkpoint; the live value is base + PN-counter
+    private static void applyLikes(PostDTO dto, Post post, Long likeDelta) {
+        if (likeDelta != null) {
+            dto.setLikesCount(Math.max(0, post.getLikesBase() + likeDelta));
+        }
     }
 
     public PostDTO getPostByVideoName(String videoName) {
         return postMapper.toDto(postRepository.findByVideoPath(videoName).orElse(null));
     }
 
-    @Transactional(rollbackFor = Exception.class)
+    /**
+     * Stores and hashes the uploaded files before any transaction is opened, so the pass
+     * over a large video does not hold a database connection; only the insert of the
+     * post runs in one.
+     */
     public PostDTO createPost(PostDTO postDTO, MultipartFile videoFile, MultipartFile thumbFile) {
-        String videoName = null;
-        String thumbName = null;
-
+        String videoName;
         try {
             videoName = fileService.saveFile(videoFile, ServerConstants.videoDir);
+        } catch (Exception e) {
+            throw new RuntimeException("Post creation failed: " + e.getMessage(), e);
+        }
+        return createPostForVideo(postDTO, videoName, thumbFile);
+    }
 
-            // Save as .m3u8 in DB so frontend requests HLS
-            postDTO.setVideoPath(videoName.replace(".mp4", ".m3u8"));
-            // postDTO.setVideoPath(videoName);
+    /**
+     * Creates a post from a finished resumable upload. The assembled file is renamed into
+     * the video directory, so it is not copied again before transcoding.
+     */
+    public PostDTO createPost(PostDTO postDTO, Path uploadedVideo, String originalFilename, MultipartFile thumbFile) {
+        String videoName;
+        try {
+            videoName = fileService.moveFile(uploadedVideo, originalFilename, ServerConstants.videoDir);
+        } catch (Exception e) {
+            fileService.deleteFile(uploadedVideo.toString());
+            throw new RuntimeException("Post creation failed: " + e.getMessage(), e);
+        }
+        return createPostForVideo(postDTO, videoName, thumbFile);
+    }
 
-            thumbName = fileService.saveFile(thumbFile, ServerConstants.thumbDir);
-            postDTO.setThumbnailPath(thumbName);
+    private PostDTO createPostForVideo(PostDTO postDTO, String videoName, MultipartFile thumbFile) {
+        String thumbName = null;
 
-            transcodingService.transcodeInPlaceAsync(ServerConstants.videoDir + "/" + videoName);
+        MediaContentStore.Stored video = null;
+        MediaContentStore.Stored thumb = null;
+        PostDTO created;
 
-            Post post = postMapper.toEntity(postDTO);
-            Optional<User> current = userRepository.findById(postDTO.getUser_id());
-            current.ifPresent(post::setUser);
-            post.setCreatedAt(LocalDateTime.now());
+        try {
+            // Save as .m3u8 in DB so frontend requests HLS. An earlier upload of the same
+            // bytes is only reused once its transcode has finished; until then this one is
+            // transcoded on its own, so it never depends on a job that may still fail
+            video = mediaContentStore.deduplicate(MediaContentStore.Kind.VIDEO,
+                    Path.of(ServerConstants.videoDir, videoName), videoName.replace(".mp4", ".m3u8"),
+                    stored -> transcodingService.isTranscoded(ServerConstants.videoDir, stored));
+            postDTO.setVideoPath(video.name());
+            // postDTO.setVideoPath(videoName);
 
-            Post savedPost = postRepository.save(post);
-            PostDTO savedDto = postMapper.toDto(savedPost);
+            thumbName = fileService.saveFile(thumbFile, ServerConstants.thumbDir);
+            thumb = mediaContentStore.deduplicate(MediaContentStore.Kind.THUMBNAIL,
+                    Path.of(ServerConstants.thumbDir, thumbName), thumbName, stored -> true);
+            postDTO.setThumbnailPath(thumb.name());
 
-            sendUploadEvents(savedPost);
+            created = transactionTemplate.execute(status -> {
+                Post post = postMapper.toEntity(postDTO);
+                Optional<User> current = userRepository.findById(postDTO.getUser_id());
+                current.ifPresent(post::setUser);
+                post.setCreatedAt(LocalDateTime.now());
 
-            return savedDto;
+                Post savedPost = postRepository.save(post);
+                PostDTO savedDto = postMapper.toDto(savedPost);
 
+                sendUploadEvents(savedPost);
+
+                return savedDto;
+            });
         } catch (Exception e) {
-            if (videoName != null) {
+            if (video != null) {
+                mediaContentStore.release(video.name());
+            }
+            if (thumb != null) {
+                mediaContentStore.release(thumb.name());
+            }
+            if (video == null || !video.duplicate()) {
                 fileService.deleteFile(ServerConstants.videoDir + "/" + videoName);
             }
-            if (thumbName != null) {
+            if (thumbName != null && (thumb == null || !thumb.duplicate())) {
                 fileService.deleteFile(ServerConstants.thumbDir + "/" + thumbName);
             }
             throw new RuntimeException("Post creation failed: " + e.getMessage(), e);
         }
+
+        // Enqueued only once the post is committed: a job for a post whose insert failed
+        // would find its source deleted and end up dead-lettered. Same bytes as an earlier
+        // upload: its HLS output is reused, no ffmpeg run
+        if (!video.duplicate()) {
+            try {
+                transcodingService.transcodeInPlaceAsync(ServerConstants.videoDir + "/" + videoName);
+            } catch (RuntimeException e) {
+                // The post exists now; its source is kept so the job can be enqueued again
+                log.error("Post {} was created but its video {} could not be queued for transcoding: {}",
+                        created.getId(), videoName, e.getMessage());
+            }
+        }
+
+        // After the commit and off the request thread: decoding and encoding the image is
+        // too slow for either
+        if (!thumb.duplicate()) {
+            thumbnailService.generateVariantsInBackground(thumb.name());
+        }
+        return created;
     }
 
     public PostDTO createPost(PostDTO postDTO) {
@@ -128,26 +245,38 @@ public class PostService {
     public PostDTO updatePost(Long id, PostDTO postDTO) {
         Post post = postMapper.toEntity(postDTO);
         post.setId(id);
+        // Not part of the DTO; keep it so the like checkpoint stays consistent
+        postRepository.findById(id).ifPresent(existing -> {
+            post.setLikesBase(existing.getLikesBase());
+            premiereScheduleCache.invalidate(existing.getVideoPath());
+        });
         Post savedPost = postRepository.save(post);
+        premiereScheduleCache.invalidate(savedPost.getVideoPath());
         return postMapper.toDto(savedPost);
     }
 
     public void deletePost(Long id) {
+        postRepository.findById(id).ifPresent(existing -> {
+            premiereScheduleCache.invalidate(existing.getVideoPath());
+            mediaContentStore.release(existing.getVideoPath());
+            // Unknown names are included: variants are regenerated if the thumbnail is
+            // still used after all, so deleting them is never harmful
+            if (mediaContentStore.release(existing.getThumbnailPath()) <= 0 && existing.getThumbnailPath() != null) {
+                thumbnailService.deleteVariants(existing.getThumbnailPath());
+            }
+        });
         postRepository.deleteById(id);
     }
 
     public void incrementViews(Long id) {
-        String key = "video_views:" + id;
-        redisTemplate.opsForHash().increment(key, replicaName, 1);
-
-        // Log individual view for ETL pipeline
-        Post post = postRepository.findById(id).orElse(null);
-        if (post != null) {
-            VideoView videoView = VideoView.builder()
-                    .post(post)
-                    .build();
-            videoViewRepository.save(videoView);
+        if (viewCounterCoalescer.isEnabled()) {
+            viewCounterCoalescer.record(id);
+        } else {
+            viewChangeLog.increment(id, replicaName, 1);
         }
+
+        // Log individual view for ETL pipeline, written behind in batches
+        viewEventBuffer.record(id);
     }
 
     public boolean isLikedByUser(Long postId, String userEmail) {
@@ -0,0 +1,70 @@
+package com.group17.lilyoutube_server.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.group17.lilyoutube_server.model.Post;
+import com.group17.lilyoutube_server.repository.PostRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Playlist name -> scheduled start time of its post, so premiere polls do not hit the
+ * database. Concurrent misses for the same playlist share one lookup. Local edits
+ * invalidate the entry; the TTL bounds staleness for edits made on other replicas.
+ */
+@Service
+public class PremiereScheduleCache {
+
+    private static final Pattern RENDITION = Pattern.compile("(.+)_\\d+\\.m3u8");
+
+    private final PostRepository postRepository;
+    private final Cache<String, Optional<LocalDateTime>> schedules;
+
+    public PremiereScheduleCache(PostRepository postRepository, MeterRegistry meterRegistry,
+                                 @Value("${app.premiere.metadata-ttl-seconds:60}") long ttlSeconds) {
+        this.postRepository = postRepository;
+        this.schedules = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, schedules, "premiere.schedule");
+    }
+
+    /**
+     * Scheduled start of the post behind {@code playlistName}; empty when there is no
+     * such post or it is not scheduled.
+     */
+    public Optional<LocalDateTime> getScheduledStartTime(String playlistName) {
+        return schedules.get(masterName(playlistName), name -> {
+            // DB stores "uuid.m3u8" now, older posts still have the .mp4 name
+            Optional<Post> post = postRepository.findByVideoPath(name);
+            if (post.isEmpty()) {
+                post = postRepository.findByVideoPath(name.replace(".m3u8", ".mp4"));
+            }
+            return post.map(Post::getScheduledStartTime);
+        });
+    }
+
+    /**
+     * Rendition playlists ({@code uuid_<i>.m3u8}) belong to the post of their master playlist.
+     */
+    static String masterName(String playlistName) {
+        Matcher matcher = RENDITION.matcher(playlistName);
+        return matcher.matches() ? matcher.group(1) + ".m3u8" : playlistName;
+    }
+
+    public void invalidate(String videoPath) {
+        if (videoPath != null) {
+            schedules.invalidate(videoPath.replace(".mp4", ".m3u8"));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.group17.lilyoutube_server.service;
+
+import com.group17.lilyoutube_server.config.ServerConstants;
+import com.group17.lilyoutube_server.dto.CreateUploadDTO;
+import com.group17.lilyoutube_server.dto.UploadSessionDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resumable, chunked uploads in the style of tus. A session fixes the file length and
+ * chunk size up front; chunk {@code i} covers bytes {@code [i * chunkSize, ...)} and is
+ * written with a positional {@link FileChannel} write, so chunks can arrive in any
+ * order, in parallel, and be retried. Session metadata and a bitmap of received chunks
+ * live in this replica's Redis, the data in {@link ServerConstants#uploadDir}, which is
+ * on the media volume so finalizing is a rename.
+ */
+@Service
+@Slf4j
+public class ResumableUploadService {
+
+    private static final String KEY_PREFIX = "upload_session:";
+    private static final String CHUNKS_SUFFIX = ":chunks";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final int COPY_BUFFER_BYTES = 1 << 20;
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${app.upload.resumable.chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${app.upload.resumable.max-chunk-size:67108864}")
+    private int maxChunkSize;
+
+    @Value("${app.upload.resumable.max-bytes:5368709120}")
+    private long maxBytes;
+
+    @Value("${app.upload.resumable.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    @Value("${app.upload.timeout-ms:60000}")
+    private long chunkTimeoutMs;
+
+    public ResumableUploadService(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public UploadSessionDTO create(CreateUploadDTO request, String owner) throws IOException {
+        if (request.getFilename() == null || request.getFilename().isBlank()) {
+            throw new IllegalArgumentException("filename is required");
+        }
+        if (request.getLength() == null || request.getLength() <= 0 || request.getLength() > maxBytes) {
+            throw new IllegalArgumentException("length must be between 1 and " + maxBytes);
+        }
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : defaultChunkSize;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("chunkSize must be between " + MIN_CHUNK_SIZE + " and " + maxChunkSize);
+        }
+
+        String id = UUID.randomUUID().toString();
+        Files.createDirectories(Paths.get(ServerConstants.uploadDir));
+        Files.createFile(partialFile(id));
+
+        String key = key(id);
+        redisTemplate.opsForHash().putAll(key, Map.of(
+                "owner", owner,
+                "filename", request.getFilename(),
+                "length", request.getLength().toString(),
+                "chunkSize", Integer.toString(chunkSize)));
+        redisTemplate.expire(key, Duration.ofHours(sessionTtlHours));
+        log.info("Created upload session {} for {} ({} bytes)", id, owner, request.getLength());
+        return status(id, owner);
+    }
+
+    /**
+     * Writes chunk {@code index}. The offset must match the chunk's position and the body
+     * must be exactly the chunk's length; a short body leaves the chunk missing.
+     */
+    public UploadSessionDTO writeChunk(String id, String owner, int index, long offset, InputStream body)
+            throws IOException {
+        Session session = load(id, owner);
+        if (index < 0 || index >= session.chunkCount()) {
+            throw new IllegalArgumentException("Chunk index out of range: " + index);
+        }
+        long position = (long) index * session.chunkSize();
+        if (offset != position) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Upload-Offset " + offset + " does not match chunk " + index + " at " + position);
+        }
+        long expected = Math.min(session.chunkSize(), session.length() - position);
+
+        long startNanos = System.nanoTime();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(partialFile(id), StandardOpenOption.WRITE)) {
+            byte[] chunk = new byte[(int) Math.min(COPY_BUFFER_BYTES, expected)];
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            int read;
+            while (written < expected
+                    && (read = body.readNBytes(chunk, 0, (int) Math.min(chunk.length, expected - written))) > 0) {
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) > chunkTimeoutMs) {
+                    throw new IOException("Chunk upload timed out");
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, position + written);
+                }
+            }
+        }
+        if (written != expected || body.read() != -1) {
+            throw new IllegalArgumentException("Chunk " + index + " must be exactly " + expected + " bytes");
+        }
+
+        redisTemplate.opsForValue().setBit(chunksKey(id), index, true);
+        Duration ttl = Duration.ofHours(sessionTtlHours);
+        redisTemplate.expire(key(id), ttl);
+        redisTemplate.expire(chunksKey(id), ttl);
+        return status(session, id);
+    }
+
+    public UploadSessionDTO status(String id, String owner) {
+        return status(load(id, owner), id);
+    }
+
+    /**
+     * Claims a complete upload and returns the assembled file. The session is removed,
+     * so the caller owns the file from here on (and must delete it if it cannot use it).
+     */
+    public CompletedUpload complete(String id, String owner) {
+        Session session = load(id, owner);
+        if (!status(session, id).getMissingChunks().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload is incomplete");
+        }
+        if (!Boolean.TRUE.equals(redisTemplate.opsForHash().putIfAbsent(key(id), "completing", "1"))) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload is already being finalized");
+        }
+        redisTemplate.delete(List.of(key(id), chunksKey(id)));
+        return new CompletedUpload(partialFile(id), session.filename());
+    }
+
+    public void abort(String id, String owner) throws IOException {
+        load(id, owner);
+        redisTemplate.delete(List.of(key(id), chunksKey(id)));
+        Files.deleteIfExists(partialFile(id));
+    }
+
+    /**
+     * Removes data files of sessions that expired in Redis without being finalized.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.resumable.sweep-interval-ms:3600000}")
+    public void sweepExpired() {
+        Path dir = Paths.get(ServerConstants.uploadDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(Duration.ofHours(sessionTtlHours));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + PARTIAL_SUFFIX)) {
+            for (Path file : files) {
+                String id = file.getFileName().toString().replace(PARTIAL_SUFFIX, "");
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)
+                        && !Boolean.TRUE.equals(redisTemplate.hasKey(key(id)))) {
+                    Files.deleteIfExists(file);
+                    log.info("Removed abandoned upload {}", id);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to sweep abandoned uploads: {}", e.getMessage());
+        }
+    }
+
+    public record CompletedUpload(Path file, String filename) {
+    }
+
+    private record Session(String owner, String filename, long length, int chunkSize) {
+        int chunkCount() {
+            return (int) ((length + chunkSize - 1) / chunkSize);
+        }
+    }
+
+    private Session load(String id, String owner) {
+        List<Object> fields = redisTemplate.opsForHash().multiGet(key(id),
+                List.of("owner", "filename", "length", "chunkSize"));
+        // Other users' sessions are reported as missing, not forbidden
+        if (fields.get(0) == null || !fields.get(0).equals(owner)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        return new Session((String) fields.get(0), (String) fields.get(1),
+                Long.parseLong((String) fields.get(2)), Integer.parseInt((String) fields.get(3)));
+    }
+
+    private UploadSessionDTO status(Session session, String id) {
+        byte[] key = chunksKey(id).getBytes(StandardCharsets.UTF_8);
+        byte[] bitmap = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+
+        List<Integer> missing = new ArrayList<>();
+        long received = 0;
+        for (int i = 0; i < session.chunkCount(); i++) {
+            // Redis numbers bits from the most significant bit of the first byte
+            boolean present = bitmap != null && i / 8 < bitmap.length && (bitmap[i / 8] & (0x80 >>> (i % 8))) != 0;
+            if (present) {
+                long position = (long) i * session.chunkSize();
+                received += Math.min(session.chunkSize(), session.length() - position);
+            } else {
+                missing.add(i);
+            }
+        }
+        return new UploadSessionDTO(id, session.filename(), session.length(), session.chunkSize(),
+                session.chunkCount(), received, missing);
+    }
+
+    private static Path partialFile(String id) {
+        return Paths.get(ServerConstants.uploadDir).resolve(id + PARTIAL_SUFFIX);
+    }
+
+    private static String key(String id) {
+        return KEY_PREFIX + id;
+    }
+
+    private static String chunksKey(String id) {
+        return KEY_PREFIX + id + CHUNKS_SUFFIX;
+    }
+}
@@ -4,14 +4,32 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.group17.lilyoutube_server.config.ServerConstants;
 import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Serves thumbnails: the uploaded original (or its compressed copy once it is old) and
+ * fixed-width JPEG variants for feed cards. Variants are generated when the thumbnail is
+ * uploaded, from a single decode of the original, and on first request for thumbnails
+ * that predate them; they are never wider than the original.
+ */
 @Service
 @Slf4j
 public class ThumbnailService {
@@ -19,7 +37,22 @@ public class ThumbnailService {
     public record CachedThumbnail(byte[] content, String contentType) {
     }
 
+    private static final String VARIANT_CONTENT_TYPE = "image/jpeg";
+
     private final Cache<String, CachedThumbnail> thumbnailCache;
+    private List<Integer> variantWidths = List.of();
+
+    @Value("${app.thumbnails.variant-quality:0.8}")
+    private float variantQuality;
+
+    @Value("${app.thumbnails.variant-widths:160,320,640}")
+    void setVariantWidths(String widths) {
+        this.variantWidths = Arrays.stream(widths.split(","))
+                .map(String::trim)
+                .map(Integer::parseInt)
+                .sorted()
+                .toList();
+    }
 
     public ThumbnailService() {
         this.thumbnailCache = Caffeine.newBuilder()
@@ -29,37 +62,197 @@ public class ThumbnailService {
     }
 
     public CachedThumbnail getThumbnail(String name) {
-        return thumbnailCache.get(name, k -> {
+        return thumbnailCache.get(name, this::loadOriginal);
+    }
+
+    private CachedThumbnail loadOriginal(String k) {
+        if (!isValidName(k)) {
+            log.warn("Refusing thumbnail name outside the thumbnail directory: {}", k);
+            return null;
+        }
+        try {
+            Path compressedPath = Paths.get(ServerConstants.compressedThumbDir).resolve(k).normalize();
+            Path originalPath = Paths.get(ServerConstants.thumbDir).resolve(k).normalize();
+
+            Path filePath;
+            if (Files.exists(compressedPath)) {
+                filePath = compressedPath;
+                log.info("Using compressed thumbnail for: {}", k);
+            } else if (Files.exists(originalPath)) {
+                filePath = originalPath;
+            } else {
+                log.error("Thumbnail not found: {} (checked both compressed and original)", k);
+                return null;
+            }
+
+            byte[] content = Files.readAllBytes(filePath);
+            String contentType = Files.probeContentType(filePath);
+            if (contentType == null) {
+                contentType = "image/jpeg";
+            }
+            log.info("Loaded thumbnail from disk and cached: {}", k);
+            return new CachedThumbnail(content, contentType);
+        } catch (IOException e) {
+            log.error("Error reading thumbnail from disk: {}", k, e);
+            return null;
+        }
+    }
+
+    /**
+     * The variant for a display width: the narrowest one at least {@code width} wide, or
+     * the widest there is. Null when the thumbnail does not exist.
+     */
+    public CachedThumbnail getThumbnailVariant(String name, int width) {
+        if (variantWidths.isEmpty() || !isValidName(name)) {
+            return getThumbnail(name);
+        }
+        int variantWidth = variantWidthFor(width, variantWidths);
+        return thumbnailCache.get(variantKey(name, variantWidth), key -> {
+            Path variantPath = variantPath(name, variantWidth);
             try {
-                Path compressedPath = Paths.get(ServerConstants.compressedThumbDir).resolve(k).normalize();
-                Path originalPath = Paths.get(ServerConstants.thumbDir).resolve(k).normalize();
-
-                Path filePath;
-                if (Files.exists(compressedPath)) {
-                    filePath = compressedPath;
-                    log.info("Using compressed thumbnail for: {}", k);
-                } else if (Files.exists(originalPath)) {
-                    filePath = originalPath;
-                } else {
-                    log.error("Thumbnail not found: {} (checked both compressed and original)", k);
-                    return null;
+                if (!Files.exists(variantPath)) {
+                    generateVariants(name);
                 }
-
-                byte[] content = Files.readAllBytes(filePath);
-                String contentType = Files.probeContentType(filePath);
-                if (contentType == null) {
-                    contentType = "image/jpeg";
+                if (Files.exists(variantPath)) {
+                    return new CachedThumbnail(Files.readAllBytes(variantPath), VARIANT_CONTENT_TYPE);
                 }
-                log.info("Loaded thumbnail from disk and cached: {}", k);
-                return new CachedThumbnail(content, contentType);
             } catch (IOException e) {
-                log.error("Error reading thumbnail from disk: {}", k, e);
+                log.error("Error reading thumbnail variant: {}", key, e);
                 return null;
             }
+            // The original is narrower than this variant; it is the best there is. Loaded
+            // directly, since a cache loader must not go back into the same cache
+            return loadOriginal(name);
         });
     }
 
+    /**
+     * {@link #generateVariants} on the async executor, for callers on a request thread.
+     */
+    @Async
+    public void generateVariantsInBackground(String name) {
+        generateVariants(name);
+    }
+
+    /**
+     * Writes every variant narrower than the original. Best effort: a thumbnail without
+     * variants is still served in full.
+     */
+    public void generateVariants(String name) {
+        if (!isValidName(name)) {
+            log.warn("Refusing thumbnail name outside the thumbnail directory: {}", name);
+            return;
+        }
+        Path originalPath = Paths.get(ServerConstants.thumbDir).resolve(name).normalize();
+        try {
+            BufferedImage original = ImageIO.read(originalPath.toFile());
+            if (original == null) {
+                log.warn("Not a readable image, no variants for thumbnail: {}", name);
+                return;
+            }
+            // JPEG has no alpha channel
+            BufferedImage opaque = flatten(original);
+            Files.createDirectories(Paths.get(ServerConstants.thumbVariantDir));
+            for (int width : variantWidths) {
+                Path target = variantPath(name, width);
+                if (width >= original.getWidth()) {
+                    // Left over from an earlier, wider upload under the same name
+                    Files.deleteIfExists(target);
+                    continue;
+                }
+                Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    Thumbnails.of(opaque)
+                            .width(width)
+                            .outputFormat("jpg")
+                            .outputQuality(variantQuality)
+                            .toOutputStream(out);
+                }
+                moveIntoPlace(temp, target);
+            }
+            log.info("Generated thumbnail variants for: {}", name);
+        } catch (IOException e) {
+            log.error("Failed to generate thumbnail variants: {}", name, e);
+        }
+    }
+
+    /**
+     * Deletes the variant files of a thumbnail no post uses any more. Variants are derived
+     * data: if the thumbnail does turn out to be still in use, they are generated again on
+     * the next request.
+     */
+    public void deleteVariants(String name) {
+        if (!isValidName(name)) {
+            return;
+        }
+        for (int width : variantWidths) {
+            try {
+                Files.deleteIfExists(variantPath(name, width));
+            } catch (IOException e) {
+                log.warn("Could not delete thumbnail variant {}: {}", variantPath(name, width), e.getMessage());
+            }
+        }
+        evictThumbnail(name);
+    }
+
     public void evictThumbnail(String name) {
         thumbnailCache.invalidate(name);
+        variantWidths.forEach(width -> thumbnailCache.invalidate(variantKey(name, width)));
+    }
+
+    static int variantWidthFor(int width, List<Integer> widths) {
+        for (int candidate : widths) {
+            if (candidate >= width) {
+                return candidate;
+            }
+        }
+        return widths.get(widths.size() - 1);
+    }
+
+    private static String variantKey(String name, int width) {
+        return name + "@w" + width;
+    }
+
+    private static Path variantPath(String name, int width) {
+        return Paths.get(ServerConstants.thumbVariantDir).resolve(variantFileName(name, width)).normalize();
+    }
+
+    private static String variantFileName(String name, int width) {
+        String base = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+        return base + "_w" + width + ".jpg";
+    }
+
+    // Names come from requests; anything resolving outside the thumbnail directories is rejected
+    static boolean isValidName(String name) {
+        return isInside(ServerConstants.thumbDir, name)
+                && isInside(ServerConstants.compressedThumbDir, name)
+                && isInside(ServerConstants.thumbVariantDir, variantFileName(name, 0));
+    }
+
+    private static boolean isInside(String directory, String name) {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        return root.resolve(name).normalize().startsWith(root);
+    }
+
+    private static BufferedImage flatten(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = opaque.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return opaque;
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 }
@@ -0,0 +1,319 @@
+package com.group17.lilyoutube_server.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reliable transcoding queue on Redis lists. A worker takes a job with BLMOVE into its
+ * own processing list and holds a lease key it keeps refreshing while alive. Jobs of a
+ * worker whose lease expired (its node died) are reclaimed; failures are retried with
+ * exponential backoff through a delayed sorted set, and moved to a dead-letter list after
+ * {@code app.transcoding.max-attempts}. A job is the path of the uploaded file.
+ * <p>
+ * Jobs wait in a sorted set scored by arrival time plus estimated encode time, and are
+ * dispatched one at a time into the list workers block on: shortest job first among jobs
+ * that arrive together, while a long job still runs once it has waited its own duration.
+ */
+@Service
+@Slf4j
+public class TranscodingJobQueue {
+
+    public static final String QUEUE_KEY = "video_transcoding_queue";
+    public static final String DEAD_LETTER_KEY = "video_transcoding_dead";
+    private static final String PENDING_KEY = "video_transcoding_pending";
+    private static final String SCORES_KEY = "video_transcoding_scores";
+    private static final String DELAYED_KEY = "video_transcoding_delayed";
+    private static final String ATTEMPTS_KEY = "video_transcoding_attempts";
+    private static final String WORKERS_KEY = "video_transcoding_workers";
+    private static final String PROCESSING_PREFIX = "video_transcoding_processing:";
+    private static final String LEASE_PREFIX = "video_transcoding_lease:";
+    private static final String PROGRESS_PREFIX = "video_transcoding_progress:";
+
+    // KEYS[1] = delayed set, KEYS[2] = pending set, KEYS[3] = scores; ARGV[1] = now. Moves due
+    // retries back to pending with their original score, so they keep their place.
+    private static final RedisScript<Long> PROMOTE_SCRIPT = new DefaultRedisScript<>(
+            "local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, 100) " +
+            "for _, job in ipairs(due) do " +
+            "  redis.call('ZREM', KEYS[1], job) " +
+            "  redis.call('ZADD', KEYS[2], tonumber(redis.call('HGET', KEYS[3], job) or '0'), job) " +
+            "end " +
+            "return #due",
+            Long.class);
+
+    // KEYS[1] = pending set, KEYS[2] = queue. Hands the best pending job to the workers, but
+    // only when none is waiting, so a job that arrives later can still go ahead of the rest.
+    private static final RedisScript<Long> DISPATCH_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('LLEN', KEYS[2]) > 0 then return 0 end " +
+            "local next = redis.call('ZPOPMIN', KEYS[1]) " +
+            "if #next == 0 then return 0 end " +
+            "redis.call('LPUSH', KEYS[2], next[1]) " +
+            "return 1",
+            Long.class);
+
+    // KEYS[1] = processing list, KEYS[2] = pending set, KEYS[3] = scores. Returns all jobs of a
+    // worker to pending without using an attempt.
+    private static final RedisScript<Long> RETURN_SCRIPT = new DefaultRedisScript<>(
+            "local count = 0 " +
+            "while true do " +
+            "  local job = redis.call('RPOP', KEYS[1]) " +
+            "  if not job then break end " +
+            "  redis.call('ZADD', KEYS[2], tonumber(redis.call('HGET', KEYS[3], job) or '0'), job) " +
+            "  count = count + 1 " +
+            "end " +
+            "return count",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${app.transcoding.lease-seconds:30}")
+    private long leaseSeconds;
+
+    @Value("${app.transcoding.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.transcoding.retry-backoff-ms:30000}")
+    private long retryBackoffMs;
+
+    public TranscodingJobQueue(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public record JobProgress(String job, String worker, double percent, double fps) {
+    }
+
+    public enum JobState {
+        // Pending, queued, processing or waiting for a retry
+        ACTIVE,
+        // Gave up after max-attempts
+        DEAD,
+        // Never enqueued, or completed
+        NONE
+    }
+
+    /**
+     * Adds a job expected to take {@code estimatedSeconds} to encode.
+     */
+    public void enqueue(String filePath, double estimatedSeconds) {
+        double score = score(System.currentTimeMillis() / 1000.0, estimatedSeconds);
+        redisTemplate.opsForHash().put(SCORES_KEY, filePath, Double.toString(score));
+        redisTemplate.opsForZSet().add(PENDING_KEY, filePath, score);
+        dispatch();
+    }
+
+    /**
+     * Pending jobs are dispatched lowest score first: the estimated time the job would
+     * finish if it started on arrival.
+     */
+    static double score(double arrivalSeconds, double estimatedSeconds) {
+        return arrivalSeconds + estimatedSeconds;
+    }
+
+    /**
+     * Takes or renews a worker's lease. Worker ids must be unique per process start, so a
+     * restarted node never inherits the leases of its previous run. The lease is written
+     * before the registration, so a concurrent reclaim never sees a registered worker
+     * without one; re-adding on every beat restores a worker that was wrongly reclaimed.
+     */
+    public void heartbeat(String workerId) {
+        redisTemplate.opsForValue().set(LEASE_PREFIX + workerId, "1", Duration.ofSeconds(leaseSeconds));
+        redisTemplate.opsForSet().add(WORKERS_KEY, workerId);
+    }
+
+    /**
+     * Blocks up to {@code timeout} for a job, moving it atomically into the worker's
+     * processing list.
+     */
+    public String take(String workerId, long timeout, TimeUnit unit) {
+        String job = redisTemplate.opsForList().move(QUEUE_KEY, RedisListCommands.Direction.RIGHT,
+                PROCESSING_PREFIX + workerId, RedisListCommands.Direction.LEFT, timeout, unit);
+        if (job != null) {
+            // Line up the next job for the next idle worker
+            dispatch();
+        }
+        return job;
+    }
+
+    public Duration leaseDuration() {
+        return Duration.ofSeconds(leaseSeconds);
+    }
+
+    /**
+     * Marks a job done, provided the worker still holds it.
+     *
+     * @return false when the job was reclaimed from this worker in the meantime, in which
+     *         case the queue already treats it as another worker's
+     */
+    public boolean complete(String workerId, String job) {
+        if (!release(workerId, job)) {
+            return false;
+        }
+        redisTemplate.opsForHash().delete(ATTEMPTS_KEY, job);
+        redisTemplate.opsForHash().delete(SCORES_KEY, job);
+        redisTemplate.delete(PROGRESS_PREFIX + job);
+        return true;
+    }
+
+    /**
+     * Schedules a retry of a failed job, provided the worker still holds it; a reclaimed
+     * job has been requeued already and must not use a second attempt.
+     *
+     * @return false when the job was reclaimed from this worker in the meantime
+     */
+    public boolean fail(String workerId, String job) {
+        if (!release(workerId, job)) {
+            return false;
+        }
+        retryOrDeadLetter(job);
+        redisTemplate.delete(PROGRESS_PREFIX + job);
+        return true;
+    }
+
+    /**
+     * Removes a worker that leaves cleanly. Jobs it still holds were interrupted by the
+     * shutdown rather than failed, so they go back to the queue without using an attempt.
+     */
+    public void unregister(String workerId) {
+        Long returned = redisTemplate.execute(RETURN_SCRIPT,
+                List.of(PROCESSING_PREFIX + workerId, PENDING_KEY, SCORES_KEY));
+        if (returned != null && returned > 0) {
+            log.info("Returned {} unfinished transcoding job(s) of {} to the queue", returned, workerId);
+            dispatch();
+        }
+        redisTemplate.delete(LEASE_PREFIX + workerId);
+        redisTemplate.opsForSet().remove(WORKERS_KEY, workerId);
+    }
+
+    public void reportProgress(String workerId, String job, double percent, double fps) {
+        String key = PROGRESS_PREFIX + job;
+        redisTemplate.opsForHash().putAll(key, Map.of(
+                "worker", workerId,
+                "percent", String.format(Locale.ROOT, "%.1f", percent),
+                "fps", String.format(Locale.ROOT, "%.1f", fps)));
+        redisTemplate.expire(key, Duration.ofSeconds(leaseSeconds));
+    }
+
+    /**
+     * Reclaims jobs of workers whose lease expired and moves due retries back to the queue.
+     *
+     * @return number of reclaimed jobs
+     */
+    public int maintain() {
+        redisTemplate.execute(PROMOTE_SCRIPT, List.of(DELAYED_KEY, PENDING_KEY, SCORES_KEY),
+                Long.toString(System.currentTimeMillis()));
+        dispatch();
+
+        int reclaimed = 0;
+        Set<String> workers = redisTemplate.opsForSet().members(WORKERS_KEY);
+        if (workers == null) {
+            return 0;
+        }
+        for (String workerId : workers) {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(LEASE_PREFIX + workerId))) {
+                continue;
+            }
+            int jobs = reclaimProcessing(workerId);
+            if (jobs > 0) {
+                log.warn("Reclaimed {} transcoding job(s) from expired worker {}", jobs, workerId);
+            }
+            reclaimed += jobs;
+            redisTemplate.opsForSet().remove(WORKERS_KEY, workerId);
+        }
+        return reclaimed;
+    }
+
+    public long queueLength() {
+        Long length = redisTemplate.opsForList().size(QUEUE_KEY);
+        Long pending = redisTemplate.opsForZSet().zCard(PENDING_KEY);
+        return (length != null ? length : 0) + (pending != null ? pending : 0);
+    }
+
+    public long deadLetterLength() {
+        Long length = redisTemplate.opsForList().size(DEAD_LETTER_KEY);
+        return length != null ? length : 0;
+    }
+
+    /**
+     * Where a job stands. A job keeps its score from enqueue until it completes or is
+     * dead-lettered, through every retry, so the score alone tells whether it is active.
+     */
+    public JobState state(String job) {
+        if (redisTemplate.opsForHash().hasKey(SCORES_KEY, job)) {
+            return JobState.ACTIVE;
+        }
+        if (redisTemplate.opsForList().indexOf(DEAD_LETTER_KEY, job) != null) {
+            return JobState.DEAD;
+        }
+        return JobState.NONE;
+    }
+
+    public List<JobProgress> inProgress() {
+        List<JobProgress> jobs = new ArrayList<>();
+        Set<String> workers = redisTemplate.opsForSet().members(WORKERS_KEY);
+        if (workers == null) {
+            return jobs;
+        }
+        for (String workerId : workers) {
+            List<String> processing = redisTemplate.opsForList().range(PROCESSING_PREFIX + workerId, 0, -1);
+            if (processing == null) {
+                continue;
+            }
+            for (String job : processing) {
+                Map<Object, Object> progress = redisTemplate.opsForHash().entries(PROGRESS_PREFIX + job);
+                jobs.add(new JobProgress(job, workerId,
+                        Double.parseDouble((String) progress.getOrDefault("percent", "0")),
+                        Double.parseDouble((String) progress.getOrDefault("fps", "0"))));
+            }
+        }
+        return jobs;
+    }
+
+    // LREM and the reclaimer's RPOP are atomic, so exactly one of them gets the job
+    private boolean release(String workerId, String job) {
+        Long removed = redisTemplate.opsForList().remove(PROCESSING_PREFIX + workerId, 1, job);
+        if (removed == null || removed == 0) {
+            log.warn("Transcoding job {} is no longer held by {}, it was reclaimed", job, workerId);
+            return false;
+        }
+        return true;
+    }
+
+    private void dispatch() {
+        redisTemplate.execute(DISPATCH_SCRIPT, List.of(PENDING_KEY, QUEUE_KEY));
+    }
+
+    // RPOP is atomic, so concurrent reclaimers never requeue the same job twice. A crash
+    // counts as an attempt: a job that keeps killing its node must end up dead-lettered.
+    private int reclaimProcessing(String workerId) {
+        int count = 0;
+        String job;
+        while ((job = redisTemplate.opsForList().rightPop(PROCESSING_PREFIX + workerId)) != null) {
+            retryOrDeadLetter(job);
+            count++;
+        }
+        return count;
+    }
+
+    private void retryOrDeadLetter(String job) {
+        Long attempts = redisTemplate.opsForHash().increment(ATTEMPTS_KEY, job, 1);
+        if (attempts != null && attempts >= maxAttempts) {
+            redisTemplate.opsForList().leftPush(DEAD_LETTER_KEY, job);
+            redisTemplate.opsForHash().delete(ATTEMPTS_KEY, job);
+            redisTemplate.opsForHash().delete(SCORES_KEY, job);
+            log.error("Transcoding job {} failed {} times, moved to {}", job, attempts, DEAD_LETTER_KEY);
+            return;
+        }
+        long attempt = attempts != null ? attempts : 1;
+        long delayMs = retryBackoffMs << Math.min(attempt - 1, 10);
+        redisTemplate.opsForZSet().add(DELAYED_KEY, job, System.currentTimeMillis() + delayMs);
+        log.warn("Transcoding job {} failed (attempt {}), retrying in {} ms", job, attempt, delayMs);
+    }
+}
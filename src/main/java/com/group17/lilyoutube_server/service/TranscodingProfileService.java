@@ -0,0 +1,208 @@
+package com.group17.lilyoutube_server.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named encoder profiles and their measured speed on this node. A profile is picked per
+ * upload from the source size in 1080p-equivalent seconds (duration scaled by pixel
+ * count): short sources get the slow, high quality profile, long ones the fast one.
+ * Speed is kept in work units per second, one unit being one 1080p frame of output, so
+ * rates measured on one clip predict jobs with another resolution or ladder. Rates are
+ * per ffmpeg process: they are measured from the time the processes ran, summed over
+ * the chunks of a chunked encode, and turning them into wall-clock estimates for jobs
+ * that run several processes at once is up to the caller.
+ */
+@Service
+@Slf4j
+public class TranscodingProfileService {
+
+    private static final String RATES_KEY = "video_transcoding_profile_rate";
+    private static final double REFERENCE_PIXELS = 1080.0 * 1080.0;
+    private static final double DEFAULT_FRAME_RATE = 30;
+    // Until calibrated: about 1.5x real time for a full ladder of 1080p30 on a few cores
+    private static final double DEFAULT_RATE = 60;
+    // Weight of a new measurement in the moving average
+    private static final double RATE_SMOOTHING = 0.3;
+
+    /**
+     * An encoder setting: x264 preset and number of passes. Two passes apply to the
+     * bitrate ladder; the single CRF rendition is always encoded in one.
+     */
+    public record Profile(String name, String preset, int passes) {
+    }
+
+    // Which of the configured profiles a source gets
+    enum SourceSize { SHORT, DEFAULT, LONG }
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Double> rates = new ConcurrentHashMap<>();
+    private Map<String, Profile> profiles = Map.of();
+
+    @Value("${app.transcoding.profile.short:quality}")
+    private String shortProfile;
+
+    @Value("${app.transcoding.profile.default:standard}")
+    private String defaultProfile;
+
+    @Value("${app.transcoding.profile.long:fast}")
+    private String longProfile;
+
+    // Bounds in 1080p-equivalent seconds
+    @Value("${app.transcoding.profile.short-seconds:180}")
+    private double shortSeconds;
+
+    @Value("${app.transcoding.profile.long-seconds:1200}")
+    private double longSeconds;
+
+    public TranscodingProfileService(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Value("${app.transcoding.profiles:fast:veryfast:1,standard:medium:1,quality:slow:2}")
+    void setProfiles(String profiles) {
+        Map<String, Profile> parsed = new ConcurrentHashMap<>();
+        for (Profile profile : parseProfiles(profiles)) {
+            parsed.put(profile.name(), profile);
+            Gauge.builder("app.transcoding.profile.rate", rates, r -> r.getOrDefault(profile.name(), 0.0))
+                    .tag("profile", profile.name())
+                    .baseUnit("frames_per_second")
+                    .register(meterRegistry);
+        }
+        this.profiles = parsed;
+    }
+
+    /**
+     * Parses profiles such as {@code fast:veryfast:1,quality:slow:2}; entries are
+     * name:preset:passes.
+     */
+    static List<Profile> parseProfiles(String profiles) {
+        List<Profile> parsed = new ArrayList<>();
+        for (String entry : profiles.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid transcoding profile: " + entry);
+            }
+            int passes = Integer.parseInt(parts[2]);
+            if (passes < 1 || passes > 2) {
+                throw new IllegalArgumentException("Profile " + parts[0] + " must use 1 or 2 passes");
+            }
+            parsed.add(new Profile(parts[0], parts[1], passes));
+        }
+        return parsed;
+    }
+
+    public List<Profile> all() {
+        return List.copyOf(profiles.values());
+    }
+
+    public Profile select(double durationSeconds, int height) {
+        return select(durationSeconds, height, false);
+    }
+
+    /**
+     * Profile for a source. With {@code onePassOnly}, for encodes split into chunks that
+     * cannot share a first pass, a two-pass profile is replaced by the profile of the next
+     * larger size class that uses one pass, so the encode is recorded under the profile
+     * that actually ran.
+     */
+    public Profile select(double durationSeconds, int height, boolean onePassOnly) {
+        SourceSize size = classify(durationSeconds, height, shortSeconds, longSeconds);
+        Profile profile = profileFor(size);
+        while (onePassOnly && profile.passes() > 1) {
+            if (size == SourceSize.LONG) {
+                throw new IllegalStateException("No one-pass transcoding profile for chunked encodes");
+            }
+            size = SourceSize.values()[size.ordinal() + 1];
+            profile = profileFor(size);
+        }
+        return profile;
+    }
+
+    private Profile profileFor(SourceSize size) {
+        String name = switch (size) {
+            case SHORT -> shortProfile;
+            case DEFAULT -> defaultProfile;
+            case LONG -> longProfile;
+        };
+        Profile profile = profiles.get(name);
+        if (profile == null) {
+            throw new IllegalStateException("Unknown transcoding profile: " + name);
+        }
+        return profile;
+    }
+
+    /**
+     * Size class of a source from its 1080p-equivalent seconds; both bounds are inclusive.
+     */
+    static SourceSize classify(double durationSeconds, int height, double shortSeconds, double longSeconds) {
+        double size = durationSeconds * pixelScale(height);
+        if (durationSeconds <= 0 || size >= longSeconds) {
+            // Unknown duration is treated as long: the safe choice for the queue
+            return SourceSize.LONG;
+        }
+        return size <= shortSeconds ? SourceSize.SHORT : SourceSize.DEFAULT;
+    }
+
+    /**
+     * Work units of a job: output frames weighted by the pixel count of every rendition
+     * relative to 1080 lines.
+     */
+    public static double work(double durationSeconds, double frameRate, List<Integer> outputHeights) {
+        double frames = durationSeconds * (frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE);
+        double pixels = outputHeights.stream().mapToDouble(TranscodingProfileService::pixelScale).sum();
+        return frames * pixels;
+    }
+
+    public double estimateSeconds(Profile profile, double work) {
+        return work / rate(profile);
+    }
+
+    /**
+     * Folds one finished encode into the profile's speed. Calibration runs replace the
+     * rate outright; real jobs move it by a moving average.
+     */
+    public void record(Profile profile, double work, long elapsedNanos, boolean calibration) {
+        if (work <= 0 || elapsedNanos <= 0) {
+            return;
+        }
+        double measured = work / (elapsedNanos / 1e9);
+        double updated = rates.compute(profile.name(), (name, previous) ->
+                calibration || previous == null ? measured
+                        : previous + RATE_SMOOTHING * (measured - previous));
+        try {
+            redisTemplate.opsForHash().put(RATES_KEY, profile.name(), Double.toString(updated));
+        } catch (RuntimeException e) {
+            log.warn("Could not store transcoding rate of {}: {}", profile.name(), e.getMessage());
+        }
+    }
+
+    private double rate(Profile profile) {
+        return rates.computeIfAbsent(profile.name(), name -> {
+            try {
+                Object stored = redisTemplate.opsForHash().get(RATES_KEY, name);
+                if (stored != null) {
+                    return Double.parseDouble((String) stored);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not load transcoding rate of {}: {}", name, e.getMessage());
+            }
+            return DEFAULT_RATE;
+        });
+    }
+
+    private static double pixelScale(int height) {
+        return height > 0 ? (double) height * height / REFERENCE_PIXELS : 1;
+    }
+}
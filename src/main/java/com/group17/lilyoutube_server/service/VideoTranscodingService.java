@@ -1,43 +1,242 @@
 package com.group17.lilyoutube_server.service;
 
+import com.group17.lilyoutube_server.util.FfmpegProgress;
+import com.group17.lilyoutube_server.util.HlsChunkStitcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class VideoTranscodingService {
 
-    private final StringRedisTemplate redisTemplate;
+    private final TranscodingJobQueue jobQueue;
+    private final TranscodingProfileService profileService;
+    private final MeterRegistry meterRegistry;
 
-    public static final String QUEUE_KEY = "video_transcoding_queue";
-    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
+    private static final int SEGMENT_SECONDS = 10;
+    private static final Pattern MEDIA_URI = Pattern.compile("URI=\"([^\"]+)\"");
 
+    private List<Rendition> ladder = List.of();
+
+    @Value("${app.transcoding.ladder:1080:5000:192,720:2800:128,480:1400:96,360:800:64}")
+    void setLadder(String ladder) {
+        this.ladder = parseLadder(ladder);
+    }
+
+    // Two, like the fixed pool this replaced; capped at the maximum
+    @Value("${app.transcoding.workers.min:2}")
+    private int minWorkers;
+
+    // 0 = derive from cores and ffmpeg threads
+    @Value("${app.transcoding.workers.max:0}")
+    private int configuredMaxWorkers;
+
+    // Threads per ffmpeg process; 0 = half the cores
+    @Value("${app.transcoding.ffmpeg-threads:0}")
+    private int configuredFfmpegThreads;
+
+    // Concurrent ffmpeg processes on this node, whatever the worker count; 0 = as many as
+    // fit in the cores with ffmpegThreads each
+    @Value("${app.transcoding.max-ffmpeg-processes:0}")
+    private int configuredMaxFfmpegProcesses;
+
+    @Value("${app.transcoding.workers.idle-timeout-seconds:10}")
+    private long idleTimeoutSeconds;
+
+    // Sources at least this long are encoded in parallel chunks
+    @Value("${app.transcoding.chunked.enabled:true}")
+    private boolean chunkedEnabled;
+
+    @Value("${app.transcoding.chunked.min-seconds:600}")
+    private double chunkedMinSeconds;
+
+    // Rounded down to whole segments
+    @Value("${app.transcoding.chunked.chunk-seconds:120}")
+    private int chunkSeconds;
+
+    @Value("${app.transcoding.calibration.enabled:true}")
+    private boolean calibrationEnabled;
+
+    // Clip encoded with every profile at startup; a generated test pattern if unusable
+    @Value("${app.transcoding.calibration.sample:dummy.mp4}")
+    private String calibrationSample;
+
+    @Value("${app.transcoding.calibration.seconds:5}")
+    private int calibrationSeconds;
+
+    @Value("${app.replica-name}")
+    private String replicaName;
+
+    // Prefix of this process's worker ids: replica name plus a per-start nonce
+    private String nodeId;
+    private int ffmpegThreads;
+    private int maxWorkers;
+    private int maxFfmpegProcesses;
+    private Semaphore ffmpegPermits;
+
+    private final AtomicInteger workerIds = new AtomicInteger();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final AtomicInteger activeJobs = new AtomicInteger();
+    private final AtomicLong queueLength = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+    private final Set<String> liveWorkers = ConcurrentHashMap.newKeySet();
+    // workerId -> encoding fps of its current job
+    private final Map<String, Double> jobFps = new ConcurrentHashMap<>();
+    private final ExecutorService executorService = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "transcode-worker-" + workerIds.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService leaseRenewal = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "transcode-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger chunkThreadIds = new AtomicInteger();
+    // Runs the ffmpeg processes of chunked jobs; concurrency is bounded by ffmpegPermits
+    private final ExecutorService chunkExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "transcode-chunk-" + chunkThreadIds.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Sizes the pool: each ffmpeg process gets {@code ffmpegThreads} threads, and the
+     * default maximum is as many workers as fit in the cores with that budget. The
+     * ffmpeg permits enforce the same CPU budget on processes rather than jobs: a chunked
+     * job runs several at once, and an explicit worker maximum may exceed the budget.
+     */
     @PostConstruct
     public void startWorkers() {
-        for (int i = 0; i < 2; i++) {
-            int workerId = i + 1;
-            executorService.submit(() -> runWorker(workerId));
+        nodeId = replicaName + ":" + UUID.randomUUID().toString().substring(0, 8);
+        int cores = Runtime.getRuntime().availableProcessors();
+        ffmpegThreads = configuredFfmpegThreads > 0 ? configuredFfmpegThreads : Math.max(1, cores / 2);
+        int cpuBudget = Math.max(1, cores / ffmpegThreads);
+        maxWorkers = configuredMaxWorkers > 0 ? configuredMaxWorkers : cpuBudget;
+        minWorkers = Math.max(0, Math.min(minWorkers, maxWorkers));
+        maxFfmpegProcesses = configuredMaxFfmpegProcesses > 0 ? configuredMaxFfmpegProcesses : cpuBudget;
+        ffmpegPermits = new Semaphore(maxFfmpegProcesses);
+
+        meterRegistry.gauge("app.transcoding.queue.length", queueLength);
+        meterRegistry.gauge("app.transcoding.jobs.active", activeJobs);
+        meterRegistry.gauge("app.transcoding.workers", workers);
+        meterRegistry.gauge("app.transcoding.dead.length", deadLetters);
+        meterRegistry.gauge("app.transcoding.fps", jobFps,
+                fps -> fps.values().stream().mapToDouble(Double::doubleValue).sum());
+
+        long renewalMillis = Math.max(1, jobQueue.leaseDuration().toMillis() / 3);
+        leaseRenewal.scheduleAtFixedRate(this::renewLeases, renewalMillis, renewalMillis, TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < minWorkers; i++) {
+            trySpawnWorker();
+        }
+        log.info("Started {} transcoding workers (max {}, {} ffmpeg threads each, {} cores)",
+                minWorkers, maxWorkers, ffmpegThreads, cores);
+    }
+
+    /**
+     * Grows the pool towards queue depth; workers above the minimum retire by themselves
+     * once they find the queue empty.
+     */
+    @Scheduled(fixedDelayString = "${app.transcoding.workers.scale-interval-ms:5000}")
+    public void scaleWorkers() {
+        queueLength.set(jobQueue.queueLength());
+        long wanted = Math.min(maxWorkers, Math.max(minWorkers, activeJobs.get() + queueLength.get()));
+        while (workers.get() < wanted && trySpawnWorker()) {
+            log.debug("Scaled transcoding workers up to {}", workers.get());
+        }
+    }
+
+    /**
+     * Reclaims jobs of workers whose lease ran out and requeues retries that are due.
+     * Leases are not renewed here: the shared scheduler also runs other tasks, and one of
+     * them running long would let leases of live workers expire.
+     */
+    @Scheduled(fixedDelayString = "${app.transcoding.maintenance-interval-ms:10000}")
+    public void maintainQueue() {
+        jobQueue.maintain();
+        deadLetters.set(jobQueue.deadLetterLength());
+    }
+
+    // Runs on its own thread, three times per lease, so a lease survives two missed beats
+    private void renewLeases() {
+        for (String workerId : liveWorkers) {
+            try {
+                jobQueue.heartbeat(workerId);
+            } catch (Exception e) {
+                log.warn("Could not renew the lease of worker {}: {}", workerId, e.getMessage());
+            }
         }
-        log.info("Started 2 transcoding workers");
+    }
+
+    private boolean trySpawnWorker() {
+        int current;
+        do {
+            current = workers.get();
+            if (current >= maxWorkers) {
+                return false;
+            }
+        } while (!workers.compareAndSet(current, current + 1));
+        executorService.submit(this::runWorker);
+        return true;
+    }
+
+    // Leaves the pool unless that would take it below the minimum
+    private boolean tryRetireWorker() {
+        int current;
+        do {
+            current = workers.get();
+            if (current <= minWorkers) {
+                return false;
+            }
+        } while (!workers.compareAndSet(current, current - 1));
+        return true;
     }
 
     @PreDestroy
     public void stopWorkers() {
         executorService.shutdownNow();
+        chunkExecutor.shutdownNow();
         try {
             if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
                 log.warn("Exector service did not terminate in time");
@@ -45,21 +244,52 @@ public class VideoTranscodingService {
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
+        // Workers that are still running ffmpeg keep their leases until they are gone
+        leaseRenewal.shutdownNow();
     }
 
-    private void runWorker(int workerId) {
+    private void runWorker() {
+        String workerId = nodeId + ":" + Thread.currentThread().getName();
         log.info("Transcoding worker {} started", workerId);
+        boolean retired = false;
+        liveWorkers.add(workerId);
+        try {
+            jobQueue.heartbeat(workerId);
+        } catch (Exception e) {
+            log.warn("Worker {} could not take its lease yet: {}", workerId, e.getMessage());
+        }
         while (!Thread.currentThread().isInterrupted()) {
             try {
-                String filePath = redisTemplate.opsForList().rightPop(QUEUE_KEY, 10, TimeUnit.SECONDS);
+                String filePath = jobQueue.take(workerId, idleTimeoutSeconds, TimeUnit.SECONDS);
                 if (filePath != null) {
                     log.info("Worker {} picked up task: {}", workerId, filePath);
+                    activeJobs.incrementAndGet();
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    boolean success = false;
                     try {
-                        transcodeInPlace(filePath);
+                        success = transcodeInPlace(filePath, (percent, fps) -> {
+                            jobFps.put(workerId, fps);
+                            jobQueue.reportProgress(workerId, filePath, percent, fps);
+                        });
                         log.info("Worker {} finished task: {}", workerId, filePath);
                     } catch (Exception e) {
                         log.error("Worker {} failed to transcode file: {}", workerId, filePath, e);
+                    } finally {
+                        jobFps.remove(workerId);
+                        activeJobs.decrementAndGet();
+                        sample.stop(meterRegistry.timer("app.transcoding.job.duration",
+                                "result", success ? "success" : "failure"));
+                    }
+                    // An interrupted job stays in the processing list and is handed back
+                    // without using an attempt when the worker unregisters
+                    if (success) {
+                        jobQueue.complete(workerId, filePath);
+                    } else if (!Thread.currentThread().isInterrupted()) {
+                        jobQueue.fail(workerId, filePath);
                     }
+                } else if (tryRetireWorker()) {
+                    retired = true;
+                    break;
                 }
             } catch (Exception e) {
                 if (Thread.currentThread().isInterrupted()) {
@@ -73,24 +303,506 @@ public class VideoTranscodingService {
                 }
             }
         }
+        liveWorkers.remove(workerId);
+        try {
+            jobQueue.unregister(workerId);
+        } catch (Exception e) {
+            // The lease expires on its own and any held job is reclaimed
+            log.warn("Worker {} could not unregister: {}", workerId, e.getMessage());
+        }
+        if (!retired) {
+            workers.decrementAndGet();
+        }
         log.info("Transcoding worker {} shutting down", workerId);
     }
 
+    /**
+     * Receives ffmpeg's progress for the running job: percent of the input duration
+     * encoded so far and the current encoding rate.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(double percent, double fps);
+    }
+
+    /**
+     * One rung of the ABR ladder: output height and target bitrates in kbit/s.
+     */
+    public record Rendition(int height, int videoKbps, int audioKbps) {
+    }
+
+    /**
+     * Parses a ladder such as {@code 1080:5000:192,720:2800:128}; entries are
+     * height:videoKbps:audioKbps, highest first.
+     */
+    static List<Rendition> parseLadder(String ladder) {
+        List<Rendition> renditions = new ArrayList<>();
+        if (ladder == null || ladder.isBlank()) {
+            return renditions;
+        }
+        for (String entry : ladder.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid ladder entry: " + entry);
+            }
+            renditions.add(new Rendition(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2])));
+        }
+        renditions.sort(Comparator.comparingInt(Rendition::height).reversed());
+        return renditions;
+    }
+
+    /**
+     * Transcodes to HLS. With a ladder configured this writes a master playlist under the
+     * .m3u8 name, one media playlist per rendition ({@code name_<i>.m3u8}) and their
+     * segments, decoding the source once; otherwise a single 1080p-capped rendition.
+     * Media playlists are EVENT playlists that grow segment by segment while ffmpeg runs.
+     * The encoder profile is chosen from the source's duration and resolution.
+     */
     public boolean transcodeVideo(String inputPath, String outputPath) {
-        log.info("Starting transcoding: {} -> {}", inputPath, outputPath);
+        return transcodeVideo(inputPath, outputPath, (percent, fps) -> { });
+    }
 
+    public boolean transcodeVideo(String inputPath, String outputPath, ProgressListener listener) {
+        // Output filename should end with .m3u8
+        String hlsOutputPath = outputPath.replace(".mp4", ".m3u8");
+
+        SourceInfo source = probe(inputPath);
+        TranscodingProfileService.Profile profile = profileFor(source);
+        log.info("Starting transcoding: {} -> {} (profile {})", inputPath, outputPath, profile.name());
+
+        long elapsedNanos = encode(List.of("-i", inputPath), hlsOutputPath, source, profile, listener);
+        if (elapsedNanos < 0) {
+            return false;
+        }
+        profileService.record(profile, work(source), elapsedNanos, false);
+        log.info("Transcoding finished successfully: {}", outputPath);
+        return true;
+    }
+
+    /**
+     * Estimated wall-clock encode time of an upload on this node, used to order the
+     * queue. The profile rates are per process, so a chunked encode is divided by the
+     * chunk processes that can run at once.
+     */
+    public double estimateSeconds(String inputPath) {
+        SourceInfo source = probe(inputPath);
+        double processSeconds = profileService.estimateSeconds(profileFor(source), work(source));
+        if (!isChunked(source)) {
+            return processSeconds;
+        }
+        return processSeconds / Math.max(1, Math.min(chunkCount(source.durationSeconds()), maxFfmpegProcesses));
+    }
+
+    // Chunks are encoded independently, so chunked encodes always use a one-pass profile
+    private TranscodingProfileService.Profile profileFor(SourceInfo source) {
+        return profileService.select(source.durationSeconds(), source.height(), isChunked(source));
+    }
+
+    private boolean isChunked(SourceInfo source) {
+        return chunkedEnabled && !ladder.isEmpty() && source.durationSeconds() >= chunkedMinSeconds;
+    }
+
+    /**
+     * Encodes every profile once, so job estimates start from measured speeds on this
+     * hardware. Runs in the background and takes ffmpeg permits like any job.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleCalibration() {
+        if (calibrationEnabled) {
+            Thread.ofPlatform().daemon().name("transcode-calibration").start(this::calibrate);
+        }
+    }
+
+    private void calibrate() {
+        Path sample = Paths.get(calibrationSample);
+        SourceInfo source = Files.isRegularFile(sample) ? probe(sample.toString()) : null;
+        List<String> input;
+        if (source != null && source.height() > 0 && source.durationSeconds() > 0) {
+            double seconds = Math.min(calibrationSeconds, source.durationSeconds());
+            input = List.of("-t", Double.toString(seconds), "-i", sample.toString());
+            source = new SourceInfo(source.height(), source.hasAudio(), seconds, source.frameRate());
+        } else {
+            log.info("Calibration sample {} is not a usable video, using a generated 1080p30 clip", sample);
+            input = List.of("-f", "lavfi", "-i", "testsrc2=size=1920x1080:rate=30:duration=" + calibrationSeconds);
+            source = new SourceInfo(1080, false, calibrationSeconds, 30);
+        }
+
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("transcode-calibration");
+            for (TranscodingProfileService.Profile profile : profileService.all()) {
+                String output = dir.resolve(profile.name() + ".m3u8").toString();
+                long elapsedNanos = encode(input, output, source, profile, (percent, fps) -> { });
+                if (elapsedNanos < 0) {
+                    log.warn("Calibration of transcoding profile {} failed", profile.name());
+                    continue;
+                }
+                profileService.record(profile, work(source), elapsedNanos, true);
+                log.info("Calibrated transcoding profile {}: {} ms for {} s of video",
+                        profile.name(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), source.durationSeconds());
+            }
+        } catch (IOException e) {
+            log.warn("Transcoding calibration failed: {}", e.getMessage());
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Runs the encode for a profile, both passes for a two-pass one. Long sources are
+     * encoded in chunks when the profile uses one pass; calibration runs every profile on
+     * a short clip, so it never gets there with a two-pass one.
+     *
+     * @return nanoseconds the ffmpeg processes ran, summed over passes and chunks, or -1
+     *         when it failed
+     */
+    private long encode(List<String> input, String hlsOutputPath, SourceInfo source,
+                        TranscodingProfileService.Profile profile, ProgressListener listener) {
+        if (ladder.isEmpty()) {
+            return runFfmpeg(singleRenditionCommand(input, hlsOutputPath, profile.preset()),
+                    source.durationSeconds(), listener);
+        }
+        if (isChunked(source) && profile.passes() == 1) {
+            return encodeChunked(input, hlsOutputPath, source, profile, listener);
+        }
+        List<Rendition> renditions = renditionsFor(source);
+        if (profile.passes() == 1) {
+            return runFfmpeg(ladderCommand(input, hlsOutputPath, renditions, source.hasAudio(), profile.preset(), 0,
+                    null), source.durationSeconds(), listener);
+        }
+
+        // Each pass reports half of the progress
+        String passLog = hlsOutputPath.replace(".m3u8", "_pass");
+        try {
+            long first = runFfmpeg(ladderCommand(input, hlsOutputPath, renditions, source.hasAudio(),
+                    profile.preset(), 1, passLog), source.durationSeconds(),
+                    (percent, fps) -> listener.onProgress(percent / 2, fps));
+            if (first < 0) {
+                return -1;
+            }
+            long second = runFfmpeg(ladderCommand(input, hlsOutputPath, renditions, source.hasAudio(),
+                    profile.preset(), 2, passLog), source.durationSeconds(),
+                    (percent, fps) -> listener.onProgress(50 + percent / 2, fps));
+            return second < 0 ? -1 : first + second;
+        } finally {
+            deletePassLogs(passLog);
+        }
+    }
+
+    /**
+     * Split–encode–concat for long sources. The source is cut into chunks on the segment
+     * grid, and each chunk is encoded by its own ffmpeg process with a forced keyframe at
+     * its first frame, so every chunk starts on a keyframe and a segment boundary. Chunks
+     * run in parallel, bounded by the ffmpeg permits, so wall-clock time shrinks with the
+     * number of processes this node allows. Segment numbers and timestamps continue across
+     * chunks ({@code -start_number}, {@code -output_ts_offset}), so the stitched playlists
+     * need no discontinuities. Audio is encoded once, in full, as a separate rendition, to
+     * avoid encoder priming gaps at every chunk boundary. Chunks that finished before a
+     * crash are kept and skipped when the job is retried.
+     *
+     * @return nanoseconds the video chunk processes ran, summed rather than wall-clock so
+     *         the profile rate stays per process, or -1 when any of them failed
+     */
+    private long encodeChunked(List<String> input, String hlsOutputPath, SourceInfo source,
+                               TranscodingProfileService.Profile profile, ProgressListener listener) {
+        List<Rendition> renditions = renditionsFor(source);
+        int segmentsPerChunk = Math.max(1, chunkSeconds / SEGMENT_SECONDS);
+        int chunkLength = segmentsPerChunk * SEGMENT_SECONDS;
+        int chunkCount = chunkCount(source.durationSeconds());
+        double[] lengths = new double[chunkCount];
+        for (int k = 0; k < chunkCount; k++) {
+            lengths[k] = k < chunkCount - 1 ? chunkLength : source.durationSeconds() - (double) k * chunkLength;
+        }
+        String base = hlsOutputPath.substring(0, hlsOutputPath.length() - ".m3u8".length());
+        log.info("Encoding {} in {} chunks of {} s (profile {}, one pass)", hlsOutputPath, chunkCount,
+                chunkLength, profile.name());
+
+        ChunkedJob job = new ChunkedJob(base, renditions, source.hasAudio(), chunkCount);
+        double[] chunkPercent = new double[chunkCount];
+        double[] chunkFps = new double[chunkCount];
+        ProgressListener combined = (percent, fps) -> {
+            double totalPercent = 0;
+            double totalFps = 0;
+            synchronized (chunkPercent) {
+                for (int k = 0; k < chunkCount; k++) {
+                    totalPercent += chunkPercent[k] * lengths[k] / source.durationSeconds();
+                    totalFps += chunkFps[k];
+                }
+            }
+            listener.onProgress(totalPercent, totalFps);
+        };
+
+        List<Future<Long>> chunks = new ArrayList<>();
+        Future<Long> audio = null;
+        try {
+            if (source.hasAudio()) {
+                audio = chunkExecutor.submit(() -> runFfmpeg(audioCommand(input, base, renditions),
+                        source.durationSeconds(), (percent, fps) -> job.audioProgressed()));
+            }
+            for (int k = 0; k < chunkCount; k++) {
+                int chunk = k;
+                if (job.isEncoded(chunk)) {
+                    chunkPercent[chunk] = 100;
+                    job.finish(chunk);
+                    continue;
+                }
+                double start = (double) chunk * chunkLength;
+                // The last chunk reads to the end, so rounding cannot drop its final frames
+                List<String> command = chunkCommand(input, base, chunk, start,
+                        chunk < chunkCount - 1 ? lengths[chunk] : 0, chunk * segmentsPerChunk, renditions,
+                        profile.preset());
+                chunks.add(chunkExecutor.submit(() -> {
+                    long nanos = runFfmpeg(command, lengths[chunk], (percent, fps) -> {
+                        synchronized (chunkPercent) {
+                            chunkPercent[chunk] = percent;
+                            chunkFps[chunk] = fps;
+                        }
+                        combined.onProgress(percent, fps);
+                    });
+                    synchronized (chunkPercent) {
+                        chunkFps[chunk] = 0;
+                    }
+                    if (nanos >= 0) {
+                        job.finish(chunk);
+                    }
+                    return nanos;
+                }));
+            }
+
+            long total = 0;
+            boolean failed = false;
+            for (Future<Long> chunk : chunks) {
+                long nanos = chunk.get();
+                failed |= nanos < 0;
+                total += Math.max(0, nanos);
+            }
+            if (audio != null && audio.get() < 0) {
+                failed = true;
+            }
+            if (failed) {
+                return -1;
+            }
+            job.publish();
+            job.deleteChunkPlaylists();
+            return Math.max(1, total);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            chunks.forEach(chunk -> chunk.cancel(true));
+            if (audio != null) {
+                audio.cancel(true);
+            }
+            return -1;
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            log.error("Chunked transcoding of {} failed", hlsOutputPath, e);
+            return -1;
+        }
+    }
+
+    // A remainder shorter than a segment joins the last chunk instead of forming its own
+    private int chunkCount(double durationSeconds) {
+        int chunkLength = Math.max(1, chunkSeconds / SEGMENT_SECONDS) * SEGMENT_SECONDS;
+        return Math.max(1, (int) ((durationSeconds - SEGMENT_SECONDS) / chunkLength) + 1);
+    }
+
+    /**
+     * One chunk of the ladder, video only: {@code length} seconds from {@code start} (to
+     * the end when 0), numbered from {@code firstSegment} and timestamped as if encoded in
+     * one piece.
+     */
+    private List<String> chunkCommand(List<String> input, String base, int chunk, double start, double length,
+                                      int firstSegment, List<Rendition> renditions, String preset) {
+        // Input seeking, decoded accurately to the exact start time
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y", "-progress", "pipe:1", "-nostats",
+                "-ss", Double.toString(start)));
+        if (length > 0) {
+            command.addAll(List.of("-t", Double.toString(length)));
+        }
+        command.addAll(input);
+        command.addAll(List.of("-threads", Integer.toString(ffmpegThreads)));
+        String streamMap = appendLadderStreams(command, renditions, false, preset);
+        command.addAll(List.of("-an",
+                "-output_ts_offset", Double.toString(start),
+                "-f", "hls",
+                "-hls_time", Integer.toString(SEGMENT_SECONDS),
+                "-hls_list_size", "0",
+                "-hls_playlist_type", "vod",
+                "-start_number", Integer.toString(firstSegment),
+                "-var_stream_map", streamMap,
+                "-hls_segment_filename", base + "_%v_%03d.ts",
+                ChunkedJob.chunkPlaylist(base, chunk, "%v")));
+        return command;
+    }
+
+    // The shared audio rendition, numbered after the video renditions, at the top rung's bitrate
+    private List<String> audioCommand(List<String> input, String base, List<Rendition> renditions) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y", "-progress", "pipe:1", "-nostats"));
+        command.addAll(input);
+        int index = renditions.size();
+        command.addAll(List.of("-threads", Integer.toString(ffmpegThreads),
+                "-map", "0:a:0", "-vn",
+                "-c:a", "aac",
+                "-b:a", renditions.get(0).audioKbps() + "k",
+                "-f", "hls",
+                "-hls_time", Integer.toString(SEGMENT_SECONDS),
+                "-hls_list_size", "0",
+                "-hls_playlist_type", "event",
+                "-hls_segment_filename", base + "_" + index + "_%03d.ts",
+                base + "_" + index + ".m3u8"));
+        return command;
+    }
+
+    /**
+     * Output state of a chunked encode. Whenever a chunk finishes, the media playlists are
+     * rewritten with every chunk up to the first unfinished one, so playback can start
+     * once the first chunk is done; #EXT-X-ENDLIST is added when all are.
+     */
+    private static final class ChunkedJob {
+
+        private final String base;
+        private final List<Rendition> renditions;
+        private final boolean hasAudio;
+        private final boolean[] finished;
+        private int published;
+        private boolean masterPublished;
+
+        ChunkedJob(String base, List<Rendition> renditions, boolean hasAudio, int chunkCount) {
+            this.base = base;
+            this.renditions = renditions;
+            this.hasAudio = hasAudio;
+            this.finished = new boolean[chunkCount];
+        }
+
+        static String chunkPlaylist(String base, int chunk, String rendition) {
+            return base + "_c" + chunk + "_" + rendition + ".m3u8";
+        }
+
+        // ffmpeg only writes #EXT-X-ENDLIST into a VOD playlist once the chunk is complete
+        boolean isEncoded(int chunk) {
+            for (int i = 0; i < renditions.size(); i++) {
+                Path playlist = Paths.get(chunkPlaylist(base, chunk, Integer.toString(i)));
+                try {
+                    if (!Files.exists(playlist) || !Files.readString(playlist).contains("#EXT-X-ENDLIST")) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        synchronized void finish(int chunk) {
+            finished[chunk] = true;
+            try {
+                publish();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not publish chunks of {}: {}", base, e.getMessage());
+            }
+        }
+
+        synchronized void publish() throws IOException {
+            int ready = 0;
+            while (ready < finished.length && finished[ready]) {
+                ready++;
+            }
+            if (ready > published) {
+                boolean complete = ready == finished.length;
+                for (int i = 0; i < renditions.size(); i++) {
+                    List<List<String>> chunks = new ArrayList<>();
+                    for (int k = 0; k < ready; k++) {
+                        chunks.add(Files.readAllLines(Paths.get(chunkPlaylist(base, k, Integer.toString(i)))));
+                    }
+                    writeAtomically(Paths.get(base + "_" + i + ".m3u8"),
+                            HlsChunkStitcher.stitch(chunks, complete, SEGMENT_SECONDS));
+                }
+                published = ready;
+            }
+            publishMaster();
+        }
+
+        // Called on the audio process's progress, which writes its playlist on its own
+        // schedule and may only get there after the first video chunk
+        synchronized void audioProgressed() {
+            try {
+                publishMaster();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not publish master playlist of {}: {}", base, e.getMessage());
+            }
+        }
+
+        // The master goes last, once every playlist it lists exists: the first video chunk
+        // and, with audio, the audio rendition's playlist
+        private void publishMaster() throws IOException {
+            if (masterPublished || published == 0) {
+                return;
+            }
+            if (hasAudio && !Files.exists(Paths.get(base + "_" + renditions.size() + ".m3u8"))) {
+                return;
+            }
+            writeAtomically(Paths.get(base + ".m3u8"), masterPlaylist());
+            masterPublished = true;
+        }
+
+        void deleteChunkPlaylists() {
+            for (int k = 0; k < finished.length; k++) {
+                for (int i = 0; i < renditions.size(); i++) {
+                    new File(chunkPlaylist(base, k, Integer.toString(i))).delete();
+                }
+            }
+        }
+
+        private String masterPlaylist() {
+            String name = Paths.get(base).getFileName().toString();
+            int audioIndex = renditions.size();
+            StringBuilder out = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+            if (hasAudio) {
+                out.append("#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"audio\",NAME=\"audio\",DEFAULT=YES,AUTOSELECT=YES,URI=\"")
+                        .append(name).append('_').append(audioIndex).append(".m3u8\"\n");
+            }
+            for (int i = 0; i < renditions.size(); i++) {
+                Rendition rendition = renditions.get(i);
+                // Peak rate: the video maxrate plus the shared audio
+                long bandwidth = (rendition.videoKbps() * 107L / 100
+                        + (hasAudio ? renditions.get(0).audioKbps() : 0)) * 1000;
+                out.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(bandwidth);
+                if (hasAudio) {
+                    out.append(",AUDIO=\"audio\"");
+                }
+                out.append('\n').append(name).append('_').append(i).append(".m3u8\n");
+            }
+            return out.toString();
+        }
+
+        private static void writeAtomically(Path target, String content) throws IOException {
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.writeString(temp, content);
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private List<String> singleRenditionCommand(List<String> input, String hlsOutputPath, String preset) {
         List<String> command = new ArrayList<>();
         command.add("ffmpeg");
         command.add("-y");
-        command.add("-i");
-        command.add(inputPath);
+        // Machine-readable progress on stdout instead of the status line
+        command.add("-progress");
+        command.add("pipe:1");
+        command.add("-nostats");
+        command.addAll(input);
+        command.add("-threads");
+        command.add(Integer.toString(ffmpegThreads));
 
         // Video Codec: H.264
         command.add("-c:v");
         command.add("libx264");
 
         command.add("-preset");
-        command.add("medium");
+        command.add(preset);
 
         // CRF: 23
         command.add("-crf");
@@ -104,9 +816,13 @@ public class VideoTranscodingService {
 
         // HLS Settings
         command.add("-hls_time");
-        command.add("10"); // 10 second segments
+        command.add(Integer.toString(SEGMENT_SECONDS)); // 10 second segments
         command.add("-hls_list_size");
         command.add("0"); // Include all segments in the playlist
+        // Rewritten after every segment and closed with #EXT-X-ENDLIST at the end, so the
+        // video plays while it is still being transcoded
+        command.add("-hls_playlist_type");
+        command.add("event");
         command.add("-f");
         command.add("hls");
 
@@ -114,58 +830,286 @@ public class VideoTranscodingService {
         command.add("-vf");
         command.add("scale='min(1920,iw)':-2");
 
-        // Output filename should end with .m3u8
-        String hlsOutputPath = outputPath.replace(".mp4", ".m3u8");
         String segmentFilename = hlsOutputPath.replace(".m3u8", "_%03d.ts");
-        
+
         command.add("-hls_segment_filename");
         command.add(segmentFilename);
         command.add(hlsOutputPath);
+        return command;
+    }
+
+    /**
+     * The ladder encode. {@code pass} is 0 for a single pass; pass 1 only writes the rate
+     * control statistics to {@code passLog} and discards its output, pass 2 reads them.
+     * Both passes map the same streams in the same order, so the per-stream logs match.
+     */
+    private List<String> ladderCommand(List<String> input, String hlsOutputPath, List<Rendition> renditions,
+                                       boolean hasAudio, String preset, int pass, String passLog) {
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-y", "-progress", "pipe:1", "-nostats"));
+        command.addAll(input);
+        command.addAll(List.of("-threads", Integer.toString(ffmpegThreads)));
+        String streamMap = appendLadderStreams(command, renditions, hasAudio, preset);
+        if (pass > 0) {
+            command.addAll(List.of("-pass", Integer.toString(pass), "-passlogfile", passLog));
+        }
+        if (pass == 1) {
+            command.addAll(List.of("-f", "null", "-"));
+            return command;
+        }
+        command.addAll(List.of("-f", "hls",
+                "-hls_time", Integer.toString(SEGMENT_SECONDS),
+                "-hls_list_size", "0",
+                "-hls_playlist_type", "event",
+                "-master_pl_name", Paths.get(hlsOutputPath).getFileName().toString(),
+                "-var_stream_map", streamMap,
+                "-hls_segment_filename", hlsOutputPath.replace(".m3u8", "_%v_%03d.ts"),
+                hlsOutputPath.replace(".m3u8", "_%v.m3u8")));
+        return command;
+    }
+
+    /**
+     * Adds the decode, scale and encode options of the ladder.
+     *
+     * @return the matching {@code -var_stream_map}
+     */
+    private String appendLadderStreams(List<String> command, List<Rendition> renditions, boolean hasAudio,
+                                       String preset) {
+        // Decode once, split into one scaled branch per rendition
+        StringBuilder filter = new StringBuilder("[0:v]split=").append(renditions.size());
+        for (int i = 0; i < renditions.size(); i++) {
+            filter.append("[v").append(i).append(']');
+        }
+        for (int i = 0; i < renditions.size(); i++) {
+            filter.append(";[v").append(i).append("]scale=-2:").append(renditions.get(i).height())
+                    .append("[v").append(i).append("out]");
+        }
+        command.add("-filter_complex");
+        command.add(filter.toString());
+
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < renditions.size(); i++) {
+            Rendition rendition = renditions.get(i);
+            command.addAll(List.of("-map", "[v" + i + "out]",
+                    "-c:v:" + i, "libx264",
+                    "-b:v:" + i, rendition.videoKbps() + "k",
+                    "-maxrate:v:" + i, (rendition.videoKbps() * 107 / 100) + "k",
+                    "-bufsize:v:" + i, (rendition.videoKbps() * 3 / 2) + "k"));
+            if (hasAudio) {
+                command.addAll(List.of("-map", "0:a:0",
+                        "-c:a:" + i, "aac",
+                        "-b:a:" + i, rendition.audioKbps() + "k"));
+            }
+            if (i > 0) {
+                streamMap.append(' ');
+            }
+            streamMap.append("v:").append(i);
+            if (hasAudio) {
+                streamMap.append(",a:").append(i);
+            }
+        }
+
+        command.addAll(List.of("-preset", preset,
+                // Keyframes on segment boundaries in every rendition, so segment i of each
+                // rendition covers the same time range and players can switch between them
+                "-sc_threshold", "0",
+                "-force_key_frames", "expr:gte(t,n_forced*" + SEGMENT_SECONDS + ")"));
+        return streamMap.toString();
+    }
+
+    // Never upscale: keep the rungs at or below the source height, and at least the lowest
+    private List<Rendition> renditionsFor(SourceInfo source) {
+        if (source.height() <= 0) {
+            return ladder;
+        }
+        List<Rendition> renditions = ladder.stream().filter(r -> r.height() <= source.height()).toList();
+        return renditions.isEmpty() ? List.of(ladder.get(ladder.size() - 1)) : renditions;
+    }
 
+    private double work(SourceInfo source) {
+        List<Integer> heights = ladder.isEmpty()
+                ? List.of(source.height() > 0 ? Math.min(source.height(), 1080) : 1080)
+                : renditionsFor(source).stream().map(Rendition::height).toList();
+        return TranscodingProfileService.work(source.durationSeconds(), source.frameRate(), heights);
+    }
+
+    private record SourceInfo(int height, boolean hasAudio, double durationSeconds, double frameRate) {
+    }
+
+    private SourceInfo probe(String inputPath) {
+        List<String> command = List.of("ffprobe", "-v", "error",
+                "-show_entries", "format=duration:stream=codec_type,height,avg_frame_rate",
+                "-of", "default=noprint_wrappers=1", inputPath);
+        int height = 0;
+        boolean hasAudio = false;
+        double duration = 0;
+        double frameRate = 0;
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                String streamType = "";
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf('=');
+                    if (separator < 0) {
+                        continue;
+                    }
+                    String key = line.substring(0, separator);
+                    String value = line.substring(separator + 1).trim();
+                    switch (key) {
+                        case "codec_type" -> {
+                            streamType = value;
+                            hasAudio |= value.equals("audio");
+                        }
+                        // The first video stream wins; attached pictures come later
+                        case "height" -> {
+                            if (streamType.equals("video") && height == 0) {
+                                height = parseOrZero(value);
+                            }
+                        }
+                        case "avg_frame_rate" -> {
+                            if (streamType.equals("video") && frameRate == 0) {
+                                frameRate = parseRate(value);
+                            }
+                        }
+                        case "duration" -> duration = Math.max(0, parseRate(value));
+                        default -> {
+                        }
+                    }
+                }
+            }
+            process.waitFor();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Fall back to the full ladder with audio; ffmpeg reports anything really wrong
+            log.warn("ffprobe failed for {}: {}", inputPath, e.getMessage());
+            return new SourceInfo(0, true, 0, 0);
+        }
+        return new SourceInfo(height, hasAudio, duration, frameRate);
+    }
+
+    private static int parseOrZero(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Plain numbers or ffprobe fractions such as 30000/1001; N/A and 0/0 are 0
+    static double parseRate(String value) {
+        try {
+            int slash = value.indexOf('/');
+            if (slash < 0) {
+                return Double.parseDouble(value);
+            }
+            double denominator = Double.parseDouble(value.substring(slash + 1));
+            return denominator == 0 ? 0 : Double.parseDouble(value.substring(0, slash)) / denominator;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // x264 writes <prefix>-<stream>.log and .mbtree files next to the output
+    private static void deletePassLogs(String passLog) {
+        Path prefix = Paths.get(passLog);
+        Path dir = prefix.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(dir, prefix.getFileName() + "-*")) {
+            for (Path file : logs) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete two-pass logs {}: {}", passLog, e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * @return nanoseconds the ffmpeg process ran, or -1 when it failed
+     */
+    private long runFfmpeg(List<String> command, double durationSeconds, ProgressListener listener) {
+        try {
+            ffmpegPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
         try {
+            long startNanos = System.nanoTime();
             ProcessBuilder pb = new ProcessBuilder(command);
             pb.redirectErrorStream(true);
 
             Process process = pb.start();
 
+            FfmpegProgress progress = new FfmpegProgress(durationSeconds);
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
-                    log.debug("FFmpeg: {}", line);
+                    if (progress.accept(line)) {
+                        listener.onProgress(progress.percent(), progress.fps());
+                    } else {
+                        log.debug("FFmpeg: {}", line);
+                    }
                 }
             }
 
             int exitCode = process.waitFor();
             if (exitCode == 0) {
-                log.info("Transcoding finished successfully: {}", outputPath);
-                return true;
+                return Math.max(1, System.nanoTime() - startNanos);
             } else {
                 log.error("FFmpeg failed with exit code: {}", exitCode);
-                return false;
+                return -1;
             }
         } catch (Exception e) {
             log.error("Error during transcoding", e);
-            return false;
+            return -1;
+        } finally {
+            ffmpegPermits.release();
         }
     }
 
     public boolean transcodeInPlace(String filePath) {
+        return transcodeInPlace(filePath, (percent, fps) -> { });
+    }
+
+    /**
+     * Transcodes an upload next to itself. The source is kept as {@code .original} while
+     * ffmpeg runs, so a job reclaimed after a crash resumes from it; a job whose source is
+     * gone but whose playlist exists finished before the crash and is reported done.
+     */
+    public boolean transcodeInPlace(String filePath, ProgressListener listener) {
         log.info("Starting in-place transcoding: {}", filePath);
         File originalFile = new File(filePath);
-        if (!originalFile.exists()) {
-            log.error("File not found for transcoding: {}", filePath);
-            return false;
-        }
-
         String tempPath = filePath + ".original";
         File tempFile = new File(tempPath);
 
-        if (!originalFile.renameTo(tempFile)) {
-            log.error("Could not rename file for transcoding: {}", filePath);
+        if (originalFile.exists()) {
+            if (!originalFile.renameTo(tempFile)) {
+                log.error("Could not rename file for transcoding: {}", filePath);
+                return false;
+            }
+        } else if (tempFile.exists()) {
+            log.info("Resuming interrupted transcoding: {}", filePath);
+        } else if (new File(filePath.replace(".mp4", ".m3u8")).exists()) {
+            log.info("Already transcoded: {}", filePath);
+            return true;
+        } else {
+            log.error("File not found for transcoding: {}", filePath);
             return false;
         }
 
-        boolean success = transcodeVideo(tempPath, filePath);
+        boolean success = transcodeVideo(tempPath, filePath, listener);
 
         if (success) {
             if (!tempFile.delete()) {
@@ -183,6 +1127,48 @@ public class VideoTranscodingService {
         return success;
     }
 
+    /**
+     * Where the transcoding job behind an HLS playlist (master or rendition) stands. The
+     * job is looked up in the queue rather than inferred from files: a failed job restores
+     * its source, which would look like one still waiting.
+     */
+    public TranscodingJobQueue.JobState jobState(String directory, String playlistName) {
+        String source = PremiereScheduleCache.masterName(playlistName).replace(".m3u8", ".mp4");
+        return jobQueue.state(directory + "/" + source);
+    }
+
+    /**
+     * Whether the transcode of a playlist finished: it, or for a master playlist every
+     * playlist it references, ends with #EXT-X-ENDLIST. Playlists are written while
+     * ffmpeg runs, so their mere presence says nothing.
+     */
+    public boolean isTranscoded(String directory, String playlistName) {
+        try {
+            List<String> lines = Files.readAllLines(Paths.get(directory, playlistName));
+            List<String> mediaPlaylists = new ArrayList<>();
+            for (String line : lines) {
+                Matcher uri = MEDIA_URI.matcher(line);
+                if (line.startsWith("#EXT-X-MEDIA:") && uri.find()) {
+                    mediaPlaylists.add(uri.group(1));
+                } else if (!line.isBlank() && !line.startsWith("#") && line.endsWith(".m3u8")) {
+                    mediaPlaylists.add(line.trim());
+                }
+            }
+            if (mediaPlaylists.isEmpty()) {
+                return lines.stream().anyMatch(line -> line.trim().equals("#EXT-X-ENDLIST"));
+            }
+            for (String mediaPlaylist : mediaPlaylists) {
+                if (!Files.readAllLines(Paths.get(directory, mediaPlaylist)).stream()
+                        .anyMatch(line -> line.trim().equals("#EXT-X-ENDLIST"))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     /**
      * Enqueues the file for transcoding.
      */
@@ -191,7 +1177,8 @@ public class VideoTranscodingService {
             log.warn("Attempted to enqueue null file path");
             return;
         }
-        log.info("Enqueuing transcoding task: {}", filePath);
-        redisTemplate.opsForList().leftPush(QUEUE_KEY, filePath);
+        double estimatedSeconds = estimateSeconds(filePath);
+        log.info("Enqueuing transcoding task: {} (estimated {} s)", filePath, Math.round(estimatedSeconds));
+        jobQueue.enqueue(filePath, estimatedSeconds);
     }
 }
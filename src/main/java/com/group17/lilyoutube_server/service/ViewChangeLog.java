@@ -0,0 +1,132 @@
+package com.group17.lilyoutube_server.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Tracks which videos' view counters changed on this replica, so peers can pull
+ * only the delta since the last version they saw.
+ * A monotonically increasing version lives in {@link #VERSION_KEY}; every change
+ * (re)scores the video in the {@link #CHANGES_KEY} sorted set with a fresh version.
+ * Since every counter write goes through here, the sorted set doubles as the registry
+ * of all videos with a counter, which replaces KEYS scans over video_views:*.
+ * Like counters share the same log, so one delta carries both views and likes.
+ */
+@Service
+@Slf4j
+public class ViewChangeLog {
+
+    public static final String VERSION_KEY = "view_sync:version";
+    public static final String CHANGES_KEY = "view_sync:changes";
+
+    // KEYS[1] = counter hash, KEYS[2] = version, KEYS[3] = changes; ARGV = replica, delta, videoId
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2]) " +
+            "local v = redis.call('INCR', KEYS[2]) " +
+            "redis.call('ZADD', KEYS[3], v, ARGV[3]) " +
+            "return v",
+            Long.class);
+
+    // KEYS[1] = version, KEYS[2] = changes; ARGV = videoIds
+    private static final RedisScript<Long> MARK_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('INCR', KEYS[1]) " +
+            "for i = 1, #ARGV do redis.call('ZADD', KEYS[2], v, ARGV[i]) end " +
+            "return v",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public ViewChangeLog(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Increments this replica's GCounter field and records the change atomically.
+     */
+    public void increment(Long videoId, String replicaName, long delta) {
+        increment(ViewCountResolver.key(videoId), replicaName, delta, videoId);
+    }
+
+    /**
+     * Increments one field of any per-post counter hash and records the post as changed.
+     */
+    public void increment(String hashKey, String field, long delta, Long videoId) {
+        redisTemplate.execute(INCREMENT_SCRIPT,
+                List.of(hashKey, VERSION_KEY, CHANGES_KEY),
+                field, Long.toString(delta), videoId.toString());
+    }
+
+    /**
+     * Records that the given videos' counters changed. Call after the hash write.
+     */
+    public void markChanged(Collection<Long> videoIds) {
+        if (videoIds.isEmpty()) {
+            return;
+        }
+        String[] args = videoIds.stream().map(String::valueOf).toArray(String[]::new);
+        redisTemplate.execute(MARK_SCRIPT, List.of(VERSION_KEY, CHANGES_KEY), (Object[]) args);
+    }
+
+    public long currentVersion() {
+        String value = redisTemplate.opsForValue().get(VERSION_KEY);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    /**
+     * Videos whose counters changed after {@code sinceVersion} up to and including {@code untilVersion}.
+     */
+    public List<Long> changedBetween(long sinceVersion, long untilVersion) {
+        Set<String> members = redisTemplate.opsForZSet()
+                .rangeByScore(CHANGES_KEY, sinceVersion + 1, untilVersion);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(members.size());
+        for (String member : members) {
+            ids.add(Long.parseLong(member));
+        }
+        return ids;
+    }
+
+    /**
+     * Walks every registered video with ZSCAN and hands them out in chunks of about
+     * {@code chunkSize}, so Redis is never blocked for the whole key space.
+     */
+    public void forEachVideoChunk(int chunkSize, Consumer<List<Long>> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(chunkSize).build();
+        List<Long> chunk = new ArrayList<>(chunkSize);
+        Set<Long> seen = new HashSet<>();
+        try (Cursor<ZSetOperations.TypedTuple<String>> cursor = redisTemplate.opsForZSet().scan(CHANGES_KEY, options)) {
+            while (cursor.hasNext()) {
+                Long videoId = Long.parseLong(cursor.next().getValue());
+                // ZSCAN may return an element more than once
+                if (!seen.add(videoId)) {
+                    continue;
+                }
+                chunk.add(videoId);
+                if (chunk.size() >= chunkSize) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
+
+    public List<Long> allVideoIds(int chunkSize) {
+        List<Long> ids = new ArrayList<>();
+        forEachVideoChunk(chunkSize, ids::addAll);
+        return ids;
+    }
+}
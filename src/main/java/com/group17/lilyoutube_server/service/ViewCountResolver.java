@@ -0,0 +1,120 @@
+package com.group17.lilyoutube_server.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Resolves GCounter view state for many videos at once. Every lookup is sent as a
+ * single pipelined batch of HGETALLs instead of one round trip per video.
+ */
+@Service
+@Slf4j
+public class ViewCountResolver {
+
+    public static final String KEY_PREFIX = "video_views:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Timer lookupTimer;
+    private final DistributionSummary batchSize;
+
+    @Value("${app.views.batch-size:500}")
+    private int maxBatchSize;
+
+    public ViewCountResolver(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.lookupTimer = Timer.builder("app.views.batch.lookup")
+                .description("Latency of pipelined view count lookups")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("app.views.batch.size")
+                .description("Number of videos resolved per pipelined view count lookup")
+                .register(meterRegistry);
+    }
+
+    public static String key(Long videoId) {
+        return KEY_PREFIX + videoId;
+    }
+
+    /**
+     * Merged GCounter total (sum over all replicas) for each requested video.
+     * Videos without any recorded views map to 0.
+     */
+    public Map<Long, Long> resolveTotals(Collection<Long> videoIds) {
+        Map<Long, Map<String, Long>> replicaCounts = resolveReplicaCounts(videoIds);
+        Map<Long, Long> totals = new HashMap<>(replicaCounts.size() * 2);
+        for (Map.Entry<Long, Map<String, Long>> entry : replicaCounts.entrySet()) {
+            long total = 0;
+            for (Long count : entry.getValue().values()) {
+                total += count;
+            }
+            totals.put(entry.getKey(), total);
+        }
+        return totals;
+    }
+
+    public long resolveTotal(Long videoId) {
+        return resolveTotals(List.of(videoId)).getOrDefault(videoId, 0L);
+    }
+
+    /**
+     * Per-replica counter values for each requested video, fetched in pipelined chunks
+     * of at most {@code app.views.batch-size} keys.
+     */
+    public Map<Long, Map<String, Long>> resolveReplicaCounts(Collection<Long> videoIds) {
+        return resolveHashes(videoIds, ViewCountResolver::key);
+    }
+
+    /**
+     * Same pipelined lookup for any per-post counter hash, e.g. the like PN-counters.
+     */
+    public Map<Long, Map<String, Long>> resolveHashes(Collection<Long> videoIds, Function<Long, String> keyFn) {
+        List<Long> ids = videoIds.stream().filter(Objects::nonNull).distinct().toList();
+        Map<Long, Map<String, Long>> result = new HashMap<>(ids.size() * 2);
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        Timer.Sample sample = Timer.start();
+        try {
+            for (int from = 0; from < ids.size(); from += maxBatchSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + maxBatchSize, ids.size()));
+                List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Long id : chunk) {
+                        connection.hashCommands().hGetAll(keyFn.apply(id).getBytes(StandardCharsets.UTF_8));
+                    }
+                    return null;
+                });
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    result.put(chunk.get(i), toReplicaMap(replies.get(i)));
+                }
+            }
+        } finally {
+            sample.stop(lookupTimer);
+            batchSize.record(ids.size());
+        }
+        return result;
+    }
+
+    private static Map<String, Long> toReplicaMap(Object reply) {
+        if (!(reply instanceof Map<?, ?> entries) || entries.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> replicaMap = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                replicaMap.put(entry.getKey().toString(), Long.parseLong(entry.getValue().toString()));
+            }
+        }
+        return replicaMap;
+    }
+}
@@ -0,0 +1,152 @@
+package com.group17.lilyoutube_server.service;
+
+import com.group17.lilyoutube_server.crdt.GCounter;
+import com.group17.lilyoutube_server.crdt.ReplicaIds;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional coalescing mode for view increments. Views are counted in a {@link GCounter}
+ * per post inside the JVM; each flush takes the counters' deltas and pushes them to this
+ * replica's field of the video_views:{id} hash as one pipelined batch of HINCRBYs. A
+ * delta that does not reach Redis is restored and goes out with the next flush. Only
+ * positive deltas are ever applied, so the replica's field still only grows.
+ * <p>
+ * The counters only accumulate local views; state received from peers is merged in
+ * Redis by {@link ViewSyncService} and never passes through here.
+ */
+@Service
+@Slf4j
+public class ViewCounterCoalescer {
+
+    private final StringRedisTemplate redisTemplate;
+    private final ViewChangeLog viewChangeLog;
+
+    // Only this replica's name is ever interned, so every counter is a single slot
+    private final ReplicaIds replicaIds = new ReplicaIds(1);
+    private final Map<Long, GCounter> pending = new ConcurrentHashMap<>();
+    // Counters evicted in the previous flush; drained once more to catch late increments
+    private List<Map.Entry<Long, GCounter>> retired = new ArrayList<>();
+
+    private final Counter recordedCounter;
+    private final Counter redisOpsCounter;
+
+    @Value("${app.views.coalescing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.replica-name}")
+    private String replicaName;
+
+    public ViewCounterCoalescer(StringRedisTemplate redisTemplate, ViewChangeLog viewChangeLog,
+                                MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.viewChangeLog = viewChangeLog;
+        this.recordedCounter = Counter.builder("app.views.coalescing.recorded")
+                .description("Views accumulated locally before being flushed to Redis")
+                .register(meterRegistry);
+        this.redisOpsCounter = Counter.builder("app.views.coalescing.redis.ops")
+                .description("HINCRBY commands sent to Redis by the coalescing flusher")
+                .register(meterRegistry);
+        Gauge.builder("app.views.coalescing.pending.videos", pending, Map::size)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(Long videoId) {
+        pending.computeIfAbsent(videoId, k -> new GCounter(replicaIds)).increment(replicaName, 1);
+        recordedCounter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.views.coalescing.flush-interval-ms:250}")
+    public synchronized void flush() {
+        if (pending.isEmpty() && retired.isEmpty()) {
+            return;
+        }
+
+        // Each delta is kept with the counter it came from, so a failed push can be restored
+        Map<Long, Long> deltas = new HashMap<>();
+        List<Drained> sources = new ArrayList<>();
+        for (Map.Entry<Long, GCounter> entry : retired) {
+            drain(entry.getKey(), entry.getValue(), deltas, sources);
+        }
+
+        List<Map.Entry<Long, GCounter>> nowIdle = new ArrayList<>();
+        for (Map.Entry<Long, GCounter> entry : pending.entrySet()) {
+            if (!drain(entry.getKey(), entry.getValue(), deltas, sources)
+                    && pending.remove(entry.getKey(), entry.getValue())) {
+                nowIdle.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        retired = nowIdle;
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        byte[] field = replicaName.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+                    byte[] key = ViewCountResolver.key(delta.getKey()).getBytes(StandardCharsets.UTF_8);
+                    connection.hashCommands().hIncrBy(key, field, delta.getValue());
+                }
+                return null;
+            });
+            redisOpsCounter.increment(deltas.size());
+        } catch (Exception e) {
+            // Keep the views for the next flush rather than losing them
+            sources.forEach(this::restore);
+            log.warn("Failed to flush {} coalesced view counters to Redis: {}", deltas.size(), e.getMessage());
+            return;
+        }
+        viewChangeLog.markChanged(deltas.keySet());
+    }
+
+    private record Drained(Long videoId, GCounter counter, Map<String, Long> delta) {
+    }
+
+    private boolean drain(Long videoId, GCounter counter, Map<Long, Long> deltas, List<Drained> sources) {
+        Map<String, Long> delta = counter.extractDelta();
+        if (delta.isEmpty()) {
+            return false;
+        }
+        deltas.merge(videoId, delta.get(replicaName), Long::sum);
+        sources.add(new Drained(videoId, counter, delta));
+        return true;
+    }
+
+    private void restore(Drained drained) {
+        GCounter counter = drained.counter();
+        counter.restoreDelta(drained.delta());
+        GCounter current = pending.putIfAbsent(drained.videoId(), counter);
+        if (current != null && current != counter) {
+            // A retired counter whose video got a new one meanwhile: move the views over
+            counter.extractDelta().forEach(current::increment);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        // Retired adders only need one more pass
+        flush();
+    }
+}
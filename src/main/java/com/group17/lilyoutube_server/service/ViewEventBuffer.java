@@ -0,0 +1,194 @@
+package com.group17.lilyoutube_server.service;
+
+import com.group17.lilyoutube_server.util.MpscRingBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind buffer for individual view events used by the ETL pipeline.
+ * Views are queued in memory and a background flusher writes them to video_views
+ * with JDBC batch inserts, either when a full batch is waiting or every flush interval.
+ */
+@Service
+@Slf4j
+public class ViewEventBuffer {
+
+    public enum OverflowPolicy {
+        // Discard the event and count it
+        DROP,
+        // Insert the event synchronously on the caller thread
+        SPILL
+    }
+
+    public record ViewEvent(long postId, long timestampMillis) {
+    }
+
+    // Ids come straight from the sequence Hibernate uses for VideoView, so the two
+    // writers never hand out the same id. Views of posts deleted in the meantime insert
+    // nothing instead of failing the whole batch on the foreign key.
+    private static final String INSERT_SQL =
+            "INSERT INTO video_views (id, post_id, created_at) "
+                    + "SELECT nextval('video_views_seq'), ?, ? WHERE EXISTS (SELECT 1 FROM posts WHERE id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.views.buffer.capacity:65536}")
+    private int capacity;
+
+    @Value("${app.views.buffer.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Value("${app.views.buffer.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${app.views.buffer.overflow-policy:DROP}")
+    private OverflowPolicy overflowPolicy;
+
+    private MpscRingBuffer<ViewEvent> ring;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter acceptedCounter;
+    private Counter droppedCounter;
+    private Counter spilledCounter;
+    private Counter flushedCounter;
+    private Counter failedCounter;
+    private Timer flushTimer;
+
+    public ViewEventBuffer(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        ring = new MpscRingBuffer<>(capacity);
+
+        Gauge.builder("app.views.buffer.size", ring, MpscRingBuffer::size)
+                .description("View events waiting to be written to the database")
+                .register(meterRegistry);
+        Gauge.builder("app.views.buffer.capacity", ring, MpscRingBuffer::capacity)
+                .register(meterRegistry);
+        acceptedCounter = Counter.builder("app.views.buffer.accepted").register(meterRegistry);
+        droppedCounter = Counter.builder("app.views.buffer.dropped")
+                .description("View events discarded because the buffer was full")
+                .register(meterRegistry);
+        spilledCounter = Counter.builder("app.views.buffer.spilled")
+                .description("View events written synchronously because the buffer was full")
+                .register(meterRegistry);
+        flushedCounter = Counter.builder("app.views.buffer.flushed").register(meterRegistry);
+        failedCounter = Counter.builder("app.views.buffer.failed").register(meterRegistry);
+        flushTimer = Timer.builder("app.views.buffer.flush").register(meterRegistry);
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "view-event-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("View event buffer started (capacity={}, batch={}, interval={}ms, overflow={})",
+                ring.capacity(), flushBatchSize, flushIntervalMs, overflowPolicy);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever is still queued gets written before the datasource goes away
+        flushAll();
+        log.info("View event buffer stopped");
+    }
+
+    public void record(long postId) {
+        ViewEvent event = new ViewEvent(postId, System.currentTimeMillis());
+        if (ring.offer(event)) {
+            acceptedCounter.increment();
+            if (ring.size() >= flushBatchSize) {
+                LockSupport.unpark(flusher);
+            }
+            return;
+        }
+
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            spilledCounter.increment();
+            writeBatch(List.of(event));
+        } else {
+            droppedCounter.increment();
+        }
+    }
+
+    private void runFlusher() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (running) {
+            LockSupport.parkNanos(this, intervalNanos);
+            try {
+                flushAll();
+            } catch (Exception e) {
+                log.error("View event flush failed", e);
+            }
+        }
+    }
+
+    private synchronized void flushAll() {
+        List<ViewEvent> batch = new ArrayList<>(flushBatchSize);
+        while (ring.drain(batch::add, flushBatchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<ViewEvent> batch) {
+        try {
+            int[][] counts = flushTimer.record(() -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                    (ps, event) -> {
+                        ps.setLong(1, event.postId());
+                        ps.setTimestamp(2, new Timestamp(event.timestampMillis()));
+                        ps.setLong(3, event.postId());
+                    }));
+            int written = written(counts);
+            flushedCounter.increment(written);
+            failedCounter.increment(batch.size() - written);
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                failedCounter.increment();
+                log.error("Failed to write view event of post {}: {}", batch.get(0).postId(), e.getMessage());
+                return;
+            }
+            // Retry one by one so a single bad row only loses its own event
+            log.warn("Failed to write {} view events, retrying one by one: {}", batch.size(), e.getMessage());
+            batch.forEach(event -> writeBatch(List.of(event)));
+        }
+    }
+
+    private static int written(int[][] counts) {
+        int written = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                // Drivers may answer SUCCESS_NO_INFO instead of a row count
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    written++;
+                }
+            }
+        }
+        return written;
+    }
+}
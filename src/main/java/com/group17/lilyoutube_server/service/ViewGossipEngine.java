@@ -0,0 +1,261 @@
+package com.group17.lilyoutube_server.service;
+
+import com.group17.lilyoutube_server.dto.ViewSyncDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exchanges GCounter view state with peer replicas. Every round fans out to all peers
+ * concurrently on virtual threads, pulling their delta and pushing ours. Rounds are
+ * spaced with jitter so replicas do not sync in lockstep, and each peer sits behind
+ * its own circuit breaker so a dead or slow peer costs nothing but its own timeouts.
+ */
+@Service
+@Slf4j
+public class ViewGossipEngine {
+
+    private static final String STATE_PATH = "/api/internal/views/state";
+    private static final String SYNC_PATH = "/api/internal/views/sync";
+
+    private final ViewSyncService viewSyncService;
+    private final RestTemplate restTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.peer-urls:}")
+    private String peerUrls;
+
+    @Value("${app.sync.rate-ms:10000}")
+    private long rateMs;
+
+    // Fraction of the rate added or removed at random per round
+    @Value("${app.sync.jitter:0.2}")
+    private double jitter;
+
+    @Value("${app.sync.mode:push-pull}")
+    private String mode;
+
+    // Every Nth round pulls full state, as a safety net against a peer whose version went backwards
+    @Value("${app.sync.full-every:30}")
+    private int fullSyncEvery;
+
+    @Value("${app.sync.breaker.failure-threshold:3}")
+    private int breakerFailureThreshold;
+
+    @Value("${app.sync.breaker.open-ms:30000}")
+    private long breakerOpenMs;
+
+    private final List<PeerState> peers = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService fanout;
+
+    public ViewGossipEngine(ViewSyncService viewSyncService, RestTemplate restTemplate, MeterRegistry meterRegistry) {
+        this.viewSyncService = viewSyncService;
+        this.restTemplate = restTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (peerUrls == null || peerUrls.isBlank()) {
+            return;
+        }
+        for (String peer : peerUrls.split(",")) {
+            if (!peer.isBlank()) {
+                peers.add(new PeerState(peer.trim()));
+            }
+        }
+
+        fanout = Executors.newVirtualThreadPerTaskExecutor();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "view-gossip-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduleNextRound();
+        log.info("View gossip started with {} peers (mode={}, rate={}ms)", peers.size(), mode, rateMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (fanout != null) {
+            fanout.shutdownNow();
+        }
+    }
+
+    private void scheduleNextRound() {
+        long delay = (long) (rateMs * (1.0 + jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1)));
+        scheduler.schedule(() -> {
+            try {
+                runRound();
+            } finally {
+                scheduleNextRound();
+            }
+        }, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    private void runRound() {
+        for (PeerState peer : peers) {
+            // A peer still busy with the previous round is skipped, never queued up
+            if (!peer.inFlight.compareAndSet(false, true)) {
+                continue;
+            }
+            fanout.submit(() -> {
+                try {
+                    syncWith(peer);
+                } finally {
+                    peer.inFlight.set(false);
+                }
+            });
+        }
+    }
+
+    private void syncWith(PeerState peer) {
+        if (!peer.allowRequest()) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (fullSyncEvery > 0 && ++peer.rounds % fullSyncEvery == 0) {
+                // In both directions: a peer that lost its state only recovers from a full push
+                peer.pulledVersion = null;
+                peer.pushedVersion = null;
+            }
+            if (!"push".equalsIgnoreCase(mode)) {
+                pull(peer);
+            }
+            if (!"pull".equalsIgnoreCase(mode)) {
+                push(peer);
+            }
+            peer.recordSuccess();
+        } catch (Exception e) {
+            peer.recordFailure();
+            log.warn("Failed to sync views with peer: {}. Error: {}", peer.url, e.getMessage());
+        } finally {
+            sample.stop(peer.roundTimer);
+        }
+    }
+
+    private void pull(PeerState peer) {
+        Long since = peer.pulledVersion;
+        String url = peer.url + STATE_PATH + (since != null ? "?since=" + since : "");
+        ViewSyncDTO remoteState = restTemplate.getForObject(url, ViewSyncDTO.class);
+        if (remoteState == null) {
+            return;
+        }
+        viewSyncService.receiveSync(remoteState);
+        if (remoteState.getVersion() != null) {
+            peer.pulledVersion = remoteState.getVersion();
+        }
+        log.debug("Pulled {} views from peer: {} ({} videos)", remoteState.isFull() ? "full" : "delta",
+                peer.url, remoteState.getVideoViews() != null ? remoteState.getVideoViews().size() : 0);
+    }
+
+    private void push(PeerState peer) {
+        ViewSyncDTO localState = viewSyncService.getStateSince(peer.pushedVersion);
+        if (localState.getVideoViews() == null || localState.getVideoViews().isEmpty()) {
+            peer.pushedVersion = localState.getVersion();
+            return;
+        }
+
+        String url = peer.url + SYNC_PATH;
+        try {
+            restTemplate.postForEntity(url, body(localState, peer.jsonOnly), Void.class);
+        } catch (HttpClientErrorException.UnsupportedMediaType e) {
+            // Peer predates the protobuf format; stay on JSON for it from now on
+            peer.jsonOnly = true;
+            restTemplate.postForEntity(url, body(localState, true), Void.class);
+        }
+        peer.pushedVersion = localState.getVersion();
+    }
+
+    private static HttpEntity<ViewSyncDTO> body(ViewSyncDTO state, boolean json) {
+        if (!json) {
+            return new HttpEntity<>(state);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(state, headers);
+    }
+
+    private class PeerState {
+        final String url;
+        final AtomicBoolean inFlight = new AtomicBoolean();
+        final Counter failures;
+        final Timer roundTimer;
+
+        volatile Long pulledVersion;
+        volatile Long pushedVersion;
+        volatile boolean jsonOnly;
+        volatile long lastSuccessMillis = System.currentTimeMillis();
+        int rounds;
+
+        // Circuit breaker
+        int consecutiveFailures;
+        long openUntilMillis;
+
+        PeerState(String url) {
+            this.url = url;
+            this.failures = Counter.builder("app.sync.peer.failures")
+                    .tag("peer", url)
+                    .register(meterRegistry);
+            this.roundTimer = Timer.builder("app.sync.peer.round")
+                    .tag("peer", url)
+                    .register(meterRegistry);
+            Gauge.builder("app.sync.peer.lag.ms", this, p -> System.currentTimeMillis() - p.lastSuccessMillis)
+                    .description("Time since the last successful sync with the peer")
+                    .tag("peer", url)
+                    .register(meterRegistry);
+            Gauge.builder("app.sync.peer.breaker.open", this, p -> p.isOpen() ? 1 : 0)
+                    .tag("peer", url)
+                    .register(meterRegistry);
+        }
+
+        synchronized boolean isOpen() {
+            return consecutiveFailures >= breakerFailureThreshold && System.currentTimeMillis() < openUntilMillis;
+        }
+
+        /**
+         * Closed: always. Open: never until the open period ends, then one half-open trial.
+         */
+        synchronized boolean allowRequest() {
+            return !isOpen();
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            lastSuccessMillis = System.currentTimeMillis();
+        }
+
+        synchronized void recordFailure() {
+            failures.increment();
+            consecutiveFailures++;
+            if (consecutiveFailures >= breakerFailureThreshold) {
+                if (consecutiveFailures == breakerFailureThreshold) {
+                    log.warn("Circuit breaker opened for peer: {}", url);
+                }
+                openUntilMillis = System.currentTimeMillis() + breakerOpenMs;
+            }
+        }
+    }
+}
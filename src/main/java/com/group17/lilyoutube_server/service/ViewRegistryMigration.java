@@ -0,0 +1,71 @@
+package com.group17.lilyoutube_server.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One-time backfill of the video registry from counter hashes written before the
+ * registry existed. Uses cursor-based SCAN and runs once per Redis instance.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ViewRegistryMigration implements ApplicationRunner {
+
+    static final String MIGRATION_KEY = "view_sync:registry_migrated";
+    private static final int CHUNK_SIZE = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ViewChangeLog viewChangeLog;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(MIGRATION_KEY))) {
+                return;
+            }
+            log.info("Backfilling view counter registry from existing keys...");
+
+            ScanOptions options = ScanOptions.scanOptions()
+                    .match(ViewCountResolver.KEY_PREFIX + "*")
+                    .count(CHUNK_SIZE)
+                    .build();
+            List<Long> chunk = new ArrayList<>(CHUNK_SIZE);
+            long total = 0;
+            try (Cursor<String> cursor = redisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    String key = cursor.next();
+                    try {
+                        chunk.add(Long.parseLong(key.substring(ViewCountResolver.KEY_PREFIX.length())));
+                    } catch (NumberFormatException e) {
+                        log.warn("Skipping unexpected key during registry backfill: {}", key);
+                        continue;
+                    }
+                    if (chunk.size() >= CHUNK_SIZE) {
+                        viewChangeLog.markChanged(chunk);
+                        total += chunk.size();
+                        chunk.clear();
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                viewChangeLog.markChanged(chunk);
+                total += chunk.size();
+            }
+
+            redisTemplate.opsForValue().set(MIGRATION_KEY, "1");
+            log.info("View counter registry backfill finished: {} videos registered", total);
+        } catch (Exception e) {
+            log.error("View counter registry backfill failed, will retry on next start", e);
+        }
+    }
+}
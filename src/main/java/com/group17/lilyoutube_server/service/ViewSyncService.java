@@ -4,15 +4,20 @@ import com.group17.lilyoutube_server.dto.VideoViewReplicaDTO;
 import com.group17.lilyoutube_server.dto.ViewSyncDTO;
 import com.group17.lilyoutube_server.model.Post;
 import com.group17.lilyoutube_server.repository.PostRepository;
+import com.group17.lilyoutube_server.repository.PostCounterJdbcRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,137 +26,203 @@ import java.util.stream.Collectors;
 public class ViewSyncService {
 
     private final StringRedisTemplate redisTemplate;
-    private final RestTemplate restTemplate;
     private final PostRepository postRepository;
+    private final ViewCountResolver viewCountResolver;
+    private final ViewChangeLog viewChangeLog;
+    private final PostCounterJdbcRepository postCounterJdbcRepository;
+    private final LikeCounterService likeCounterService;
+    private final MeterRegistry meterRegistry;
+
+    // KEYS[1] = version, KEYS[2] = changes, KEYS[2 + i] = counter hash of entry i;
+    // ARGV = videoId, replica, count per entry. Changed videos are re-published so they
+    // also reach peers that only talk to us.
+    private static final RedisScript<Long> MERGE_SCRIPT = new DefaultRedisScript<>(
+            "local updated = 0 " +
+            "local version = nil " +
+            "for i = 1, #KEYS - 2 do " +
+            "  local key = KEYS[i + 2] " +
+            "  local videoId = ARGV[i * 3 - 2] " +
+            "  local replica = ARGV[i * 3 - 1] " +
+            "  local count = tonumber(ARGV[i * 3]) " +
+            "  local current = tonumber(redis.call('HGET', key, replica) or '0') " +
+            "  if count > current then " +
+            "    redis.call('HSET', key, replica, ARGV[i * 3]) " +
+            "    if version == nil then version = redis.call('INCR', KEYS[1]) end " +
+            "    redis.call('ZADD', KEYS[2], version, videoId) " +
+            "    updated = updated + 1 " +
+            "  end " +
+            "end " +
+            "return updated",
+            Long.class);
 
     @Value("${app.replica-name}")
     private String replicaName;
 
-    @Value("${app.peer-urls:}")
-    private String peerUrls;
+    @Value("${app.sync.merge-chunk-size:5000}")
+    private int mergeChunkSize;
 
-    @Scheduled(fixedRateString = "${app.sync.rate-ms:10000}")
-    public void syncWithPeers() {
-        if (peerUrls == null || peerUrls.isEmpty()) {
-            return;
-        }
+    @Value("${app.views.batch-size:500}")
+    private int registryChunkSize;
 
-        String[] peers = peerUrls.split(",");
-        for (String peer : peers) {
-            try {
-                // Pull from peer: GET /api/internal/views/state
-                String url = peer.trim() + "/api/internal/views/state";
-                ViewSyncDTO remoteState = restTemplate.getForObject(url, ViewSyncDTO.class);
-                if (remoteState != null) {
-                    receiveSync(remoteState);
-                    log.info("Successfully pulled views from peer: {}", peer);
-                }
-            } catch (Exception e) {
-                log.warn("Failed to pull views from peer: {}. Error: {}", peer, e.getMessage());
-            }
-        }
-    }
+    // Change-log version covered by the last successful database flush
+    private volatile Long lastDbFlushVersion;
 
+    /**
+     * Checkpoints merged totals to posts.views_count and posts.likes_count. Only posts whose
+     * counters changed since the last successful flush are written, in chunks of one
+     * statement per counter each.
+     */
     @Scheduled(fixedRateString = "${app.sync.db-rate-ms:30000}")
     public void syncToDatabase() {
         log.info("Starting view count sync to database...");
-        Set<String> keys = redisTemplate.keys("video_views:*");
-        if (keys == null || keys.isEmpty()) {
-            return;
+        long startNanos = System.nanoTime();
+        long version = viewChangeLog.currentVersion();
+        Long since = lastDbFlushVersion;
+
+        long[] rowsWritten = {0};
+        try {
+            if (since == null) {
+                // First flush after startup: nothing known yet, so check every registered video
+                viewChangeLog.forEachVideoChunk(registryChunkSize, chunk -> rowsWritten[0] += writeTotals(chunk));
+            } else {
+                List<Long> dirty = viewChangeLog.changedBetween(since, version);
+                for (int from = 0; from < dirty.size(); from += registryChunkSize) {
+                    rowsWritten[0] += writeTotals(dirty.subList(from, Math.min(from + registryChunkSize, dirty.size())));
+                }
+            }
+            lastDbFlushVersion = version;
+        } catch (Exception e) {
+            // Version is not advanced, so the same videos are retried next round
+            log.error("Failed to sync views to DB. Error: {}", e.getMessage());
+        } finally {
+            meterRegistry.timer("app.views.db.flush").record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            meterRegistry.counter("app.views.db.rows.written").increment(rowsWritten[0]);
         }
+        log.info("Finished view count sync to database: {} rows written.", rowsWritten[0]);
+    }
 
-        for (String key : keys) {
-            try {
-                Long videoId = Long.parseLong(key.split(":")[1]);
-                Map<Object, Object> replicaViews = redisTemplate.opsForHash().entries(key);
-
-                long totalViews = 0;
-                for (Object v : replicaViews.values()) {
-                    totalViews += Long.parseLong(v.toString());
-                }
+    private int writeTotals(List<Long> videoIds) {
+        Map<Long, Long> totals = viewCountResolver.resolveTotals(videoIds);
+        totals.values().removeIf(total -> total <= 0);
+        int written = postCounterJdbcRepository.updateViewsCounts(totals);
+        return written + postCounterJdbcRepository.updateLikesCounts(likeCounterService.resolveDeltas(videoIds));
+    }
 
-                if (totalViews > 0) {
-                    postRepository.updateViewsCount(videoId, totalViews);
-                    log.debug("Synced video {} views to database: {}", videoId, totalViews);
-                }
-            } catch (Exception e) {
-                log.error("Failed to sync views to DB for key: {}. Error: {}", key, e.getMessage());
-            }
+    /**
+     * Delta state: only the videos whose counters changed after {@code since}.
+     * Falls back to the full state when no version is given or the caller is ahead
+     * of this replica (e.g. after its Redis was wiped).
+     */
+    public ViewSyncDTO getStateSince(Long since) {
+        long current = viewChangeLog.currentVersion();
+        if (since == null || since > current) {
+            return getLocalState();
         }
-        log.info("Finished view count sync to database.");
+        List<Long> changed = viewChangeLog.changedBetween(since, current);
+        return new ViewSyncDTO(nonEmpty(viewCountResolver.resolveReplicaCounts(changed)), replicaName, current, false,
+                nonEmpty(likeCounterService.resolveFields(changed)));
     }
 
     public ViewSyncDTO getLocalState() {
+        // Read the version first so nothing written during the scan is skipped by the next delta
+        long version = viewChangeLog.currentVersion();
         Map<Long, Map<String, Long>> state = new HashMap<>();
-        Set<String> keys = redisTemplate.keys("video_views:*");
-
-        if (keys != null) {
-            for (String key : keys) {
-                Long videoId = Long.parseLong(key.split(":")[1]);
-                Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        Map<Long, Map<String, Long>> likes = new HashMap<>();
+        viewChangeLog.forEachVideoChunk(registryChunkSize, chunk -> {
+            state.putAll(nonEmpty(viewCountResolver.resolveReplicaCounts(chunk)));
+            likes.putAll(nonEmpty(likeCounterService.resolveFields(chunk)));
+        });
+        return new ViewSyncDTO(state, replicaName, version, true, likes);
+    }
 
-                Map<String, Long> replicaMap = new HashMap<>();
-                for (Map.Entry<Object, Object> entry : entries.entrySet()) {
-                    replicaMap.put(entry.getKey().toString(), Long.parseLong(entry.getValue().toString()));
-                }
-                state.put(videoId, replicaMap);
-            }
-        }
-        return new ViewSyncDTO(state, replicaName);
+    // The registry is shared by views and likes, so a post may only have one of the two hashes
+    private static Map<Long, Map<String, Long>> nonEmpty(Map<Long, Map<String, Long>> counters) {
+        counters.values().removeIf(Map::isEmpty);
+        return counters;
     }
 
+    /**
+     * Merges remote GCounter state into the local hashes, in chunks of (video, replica,
+     * count) entries with one Lua call per chunk, which keeps max(local, remote) atomically
+     * and records the changed videos in the change log. Whether an entry brings anything
+     * new is decided there against Redis only: a full sync must restore counts that this
+     * replica's Redis lost, even if the same values arrived before. Like PN-counters take
+     * the same path, since their p:/n: fields merge with max exactly like view counters.
+     * A failed chunk is not retried here; the sender keeps its version and re-sends.
+     */
     public void receiveSync(ViewSyncDTO syncData) {
-        Map<Long, Map<String, Long>> remoteState = syncData.getVideoViews();
-        if (remoteState == null)
+        if (syncData.getVideoViews() == null && syncData.getPostLikes() == null)
             return;
 
-        for (Map.Entry<Long, Map<String, Long>> videoEntry : remoteState.entrySet()) {
-            Long videoId = videoEntry.getKey();
-            Map<String, Long> remoteReplicaCounts = videoEntry.getValue();
-            String key = "video_views:" + videoId;
-
-            for (Map.Entry<String, Long> replicaEntry : remoteReplicaCounts.entrySet()) {
-                String rName = replicaEntry.getKey();
-                Long rCount = replicaEntry.getValue();
-
-                // Get local value for this specific replica
-                Object localValObj = redisTemplate.opsForHash().get(key, rName);
-                long localCount = (localValObj != null) ? Long.parseLong(localValObj.toString()) : 0L;
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        long updated = addEntries(syncData.getVideoViews(), ViewCountResolver::key, keys, args);
+        updated += addEntries(syncData.getPostLikes(), LikeCounterService::key, keys, args);
+        if (!keys.isEmpty()) {
+            updated += applyChunk(keys, args);
+        }
+        log.info("Received and merged view count state from replica: {} ({} counters advanced)",
+                syncData.getSourceReplicaName(), updated);
+    }
 
-                if (rCount > localCount) {
-                    redisTemplate.opsForHash().put(key, rName, rCount.toString());
-                }
+    private long addEntries(Map<Long, Map<String, Long>> remoteState, Function<Long, String> keyFn,
+                            List<String> keys, List<String> args) {
+        if (remoteState == null)
+            return 0;
+        long updated = 0;
+        for (Map.Entry<Long, Map<String, Long>> entry : remoteState.entrySet()) {
+            String key = keyFn.apply(entry.getKey());
+            String videoId = entry.getKey().toString();
+            for (Map.Entry<String, Long> replicaEntry : entry.getValue().entrySet()) {
+                keys.add(key);
+                args.add(videoId);
+                args.add(replicaEntry.getKey());
+                args.add(replicaEntry.getValue().toString());
+            }
+            if (keys.size() >= mergeChunkSize) {
+                updated += applyChunk(keys, args);
             }
         }
-        log.info("Received and merged view count state from replica: {}", syncData.getSourceReplicaName());
+        return updated;
+    }
+
+    private long applyChunk(List<String> keys, List<String> args) {
+        try {
+            return applyMerge(keys, args);
+        } finally {
+            keys.clear();
+            args.clear();
+        }
+    }
+
+    private long applyMerge(List<String> hashKeys, List<String> args) {
+        List<String> keys = new ArrayList<>(hashKeys.size() + 2);
+        keys.add(ViewChangeLog.VERSION_KEY);
+        keys.add(ViewChangeLog.CHANGES_KEY);
+        keys.addAll(hashKeys);
+        Long updated = redisTemplate.execute(MERGE_SCRIPT, keys, args.toArray());
+        return updated != null ? updated : 0;
     }
 
     public List<VideoViewReplicaDTO> getReplicaViewsTable() {
         List<VideoViewReplicaDTO> table = new ArrayList<>();
-        Set<String> keys = redisTemplate.keys("video_views:*");
+        List<Long> videoIds = viewChangeLog.allVideoIds(registryChunkSize);
 
-        if (keys == null || keys.isEmpty()) {
+        if (videoIds.isEmpty()) {
             return table;
         }
 
-        Map<Long, Post> postMap = postRepository.findAll().stream()
+        Map<Long, Post> postMap = postRepository.findAllById(videoIds).stream()
                 .collect(Collectors.toMap(Post::getId, p -> p));
+        Map<Long, Map<String, Long>> replicaCounts = viewCountResolver.resolveReplicaCounts(videoIds);
 
-        for (String key : keys) {
-            Long videoId = Long.parseLong(key.split(":")[1]);
+        for (Long videoId : videoIds) {
             Post post = postMap.get(videoId);
             String videoName = (post != null) ? post.getVideoPath() : "Unknown (" + videoId + ")";
 
-            Map<Object, Object> replicaViews = redisTemplate.opsForHash().entries(key);
-            for (Map.Entry<Object, Object> entry : replicaViews.entrySet()) {
-                Object rId = entry.getKey();
-                Object rViews = entry.getValue();
-                if (rId != null && rViews != null) {
-                    table.add(new VideoViewReplicaDTO(
-                            videoName,
-                            rId.toString(),
-                            Long.parseLong(rViews.toString())));
-                }
+            Map<String, Long> replicaViews = replicaCounts.getOrDefault(videoId, Collections.emptyMap());
+            for (Map.Entry<String, Long> entry : replicaViews.entrySet()) {
+                table.add(new VideoViewReplicaDTO(videoName, entry.getKey(), entry.getValue()));
             }
         }
         return table;
@@ -0,0 +1,89 @@
+package com.group17.lilyoutube_server.util;
+
+/**
+ * Incremental parser for ffmpeg's {@code -progress} output: blocks of key=value lines,
+ * each terminated by {@code progress=continue} (or {@code progress=end} on the last one).
+ * Lines that are not part of a block, such as ffmpeg's regular log, are ignored.
+ */
+public class FfmpegProgress {
+
+    private final double durationSeconds;
+    private double outTimeSeconds;
+    private double fps;
+    private double speed;
+    private boolean finished;
+
+    /**
+     * @param durationSeconds input duration, or 0 when unknown (percent then stays 0)
+     */
+    public FfmpegProgress(double durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    /**
+     * Consumes one output line.
+     *
+     * @return true when the line completed a progress block
+     */
+    public boolean accept(String line) {
+        int separator = line.indexOf('=');
+        if (separator <= 0) {
+            return false;
+        }
+        String key = line.substring(0, separator).trim();
+        String value = line.substring(separator + 1).trim();
+        switch (key) {
+            // out_time_ms is microseconds as well, kept by ffmpeg for compatibility
+            case "out_time_us", "out_time_ms" -> {
+                double micros = parse(value);
+                if (micros >= 0) {
+                    outTimeSeconds = micros / 1_000_000;
+                }
+            }
+            case "fps" -> fps = Math.max(0, parse(value));
+            case "speed" -> speed = Math.max(0, parse(value.endsWith("x") ? value.substring(0, value.length() - 1) : value));
+            case "progress" -> {
+                finished = value.equals("end");
+                return true;
+            }
+            default -> {
+            }
+        }
+        return false;
+    }
+
+    public double percent() {
+        if (finished) {
+            return 100;
+        }
+        if (durationSeconds <= 0) {
+            return 0;
+        }
+        return Math.min(100, outTimeSeconds * 100 / durationSeconds);
+    }
+
+    public double fps() {
+        return fps;
+    }
+
+    public double speed() {
+        return speed;
+    }
+
+    public double outTimeSeconds() {
+        return outTimeSeconds;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // ffmpeg writes N/A before the first frame is out
+    private static double parse(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
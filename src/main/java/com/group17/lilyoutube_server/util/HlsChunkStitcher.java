@@ -0,0 +1,67 @@
+package com.group17.lilyoutube_server.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins the media playlists of consecutively encoded chunks into one EVENT playlist.
+ * Each chunk was encoded with its segment numbering continuing the previous chunk, so
+ * its #EXT-X-MEDIA-SEQUENCE must equal the number of segments before it; a gap or an
+ * overlap means the chunks do not belong together and is rejected.
+ */
+public final class HlsChunkStitcher {
+
+    private static final String EXTINF = "#EXTINF:";
+    private static final String TARGET_DURATION = "#EXT-X-TARGETDURATION:";
+    private static final String MEDIA_SEQUENCE = "#EXT-X-MEDIA-SEQUENCE:";
+
+    private HlsChunkStitcher() {
+    }
+
+    /**
+     * @param chunks   playlist lines of the chunks, in order
+     * @param complete whether these are all chunks, i.e. the result ends with #EXT-X-ENDLIST
+     * @param minTargetDuration lower bound for #EXT-X-TARGETDURATION, so it does not grow
+     *                          between versions of the playlist
+     */
+    public static String stitch(List<List<String>> chunks, boolean complete, int minTargetDuration) {
+        int targetDuration = minTargetDuration;
+        List<String> segments = new ArrayList<>();
+        int segmentCount = 0;
+
+        for (int chunk = 0; chunk < chunks.size(); chunk++) {
+            List<String> lines = chunks.get(chunk);
+            int sequence = 0;
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.startsWith(TARGET_DURATION)) {
+                    targetDuration = Math.max(targetDuration,
+                            Integer.parseInt(line.substring(TARGET_DURATION.length()).trim()));
+                } else if (line.startsWith(MEDIA_SEQUENCE)) {
+                    sequence = Integer.parseInt(line.substring(MEDIA_SEQUENCE.length()).trim());
+                } else if (line.startsWith(EXTINF) && i + 1 < lines.size()) {
+                    if (sequence != segmentCount) {
+                        throw new IllegalStateException("Chunk " + chunk + " starts at media sequence "
+                                + sequence + ", expected " + segmentCount);
+                    }
+                    segments.add(line);
+                    segments.add(lines.get(++i));
+                    segmentCount++;
+                    sequence++;
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder()
+                .append("#EXTM3U\n")
+                .append("#EXT-X-VERSION:3\n")
+                .append(TARGET_DURATION).append(targetDuration).append('\n')
+                .append(MEDIA_SEQUENCE).append("0\n")
+                .append("#EXT-X-PLAYLIST-TYPE:EVENT\n");
+        segments.forEach(line -> out.append(line).append('\n'));
+        if (complete) {
+            out.append("#EXT-X-ENDLIST\n");
+        }
+        return out.toString();
+    }
+}
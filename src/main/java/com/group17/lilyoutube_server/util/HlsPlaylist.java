@@ -0,0 +1,218 @@
+package com.group17.lilyoutube_server.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, parsed form of a media playlist, either finished (VOD) or still being
+ * appended to by the encoder (EVENT, no #EXT-X-ENDLIST yet). Segment end times are prefix
+ * sums, so the segment playing at a given offset is found with a binary search instead
+ * of walking every #EXTINF line.
+ */
+public final class HlsPlaylist {
+
+    private static final String EXTINF = "#EXTINF:";
+    private static final String ENDLIST = "#EXT-X-ENDLIST";
+    private static final String MEDIA_SEQUENCE = "#EXT-X-MEDIA-SEQUENCE:";
+    private static final String STREAM_INF = "#EXT-X-STREAM-INF:";
+    private static final String PLAYLIST_TYPE = "#EXT-X-PLAYLIST-TYPE:";
+    private static final String START_AT_BEGINNING = "#EXT-X-START:TIME-OFFSET=0";
+
+    private final List<String> header;
+    private final String[] extinfs;
+    private final String[] uris;
+    // endTimes[i] = sum of the durations of segments 0..i
+    private final double[] endTimes;
+    private final double totalDuration;
+    // A master playlist only lists renditions; it has no segments and is never windowed
+    private final boolean master;
+    // The encoder wrote #EXT-X-ENDLIST: no more segments will be added
+    private final boolean ended;
+
+    private HlsPlaylist(List<String> header, String[] extinfs, String[] uris, double[] endTimes,
+                        double totalDuration, boolean master, boolean ended) {
+        this.master = master;
+        this.ended = ended;
+        this.header = header;
+        this.extinfs = extinfs;
+        this.uris = uris;
+        this.endTimes = endTimes;
+        this.totalDuration = totalDuration;
+    }
+
+    /**
+     * Parses playlist lines. Header lines are kept up to the first segment; #EXT-X-ENDLIST
+     * is only recorded, since rendering decides whether the playlist is complete.
+     */
+    public static HlsPlaylist parse(List<String> lines) {
+        List<String> header = new ArrayList<>();
+        List<String> extinfs = new ArrayList<>();
+        List<String> uris = new ArrayList<>();
+        double[] durations = new double[16];
+        double[] endTimes = new double[16];
+        double total = 0.0;
+        boolean headerDone = false;
+        boolean master = false;
+        boolean ended = false;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.startsWith(ENDLIST)) {
+                ended = true;
+                continue;
+            }
+            if (line.startsWith(EXTINF)) {
+                headerDone = true;
+                double duration = Double.parseDouble(line.substring(EXTINF.length(), line.indexOf(',')));
+                total += duration;
+                String uri = "";
+                if (i + 1 < lines.size()) {
+                    uri = lines.get(++i);
+                }
+                if (extinfs.size() == endTimes.length) {
+                    durations = Arrays.copyOf(durations, durations.length * 2);
+                    endTimes = Arrays.copyOf(endTimes, endTimes.length * 2);
+                }
+                durations[extinfs.size()] = duration;
+                endTimes[extinfs.size()] = total;
+                extinfs.add(line);
+                uris.add(uri);
+            } else if (!headerDone) {
+                master |= line.startsWith(STREAM_INF);
+                header.add(line);
+            }
+        }
+        int count = extinfs.size();
+        // The total uses a compensated sum, so it can differ from the last prefix sum in the last bits
+        return new HlsPlaylist(List.copyOf(header), extinfs.toArray(String[]::new), uris.toArray(String[]::new),
+                Arrays.copyOf(endTimes, count), Arrays.stream(durations, 0, count).sum(), master, ended);
+    }
+
+    public boolean isMaster() {
+        return master;
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    public int segmentCount() {
+        return extinfs.length;
+    }
+
+    public double totalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * Index of the first segment that ends at or after {@code seconds}, or the last
+     * segment when the offset is past the end.
+     */
+    public int segmentAt(double seconds) {
+        int low = 0;
+        int high = endTimes.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (endTimes[mid] >= seconds) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The whole playlist, closed with #EXT-X-ENDLIST. A master playlist is returned as is.
+     */
+    public String renderComplete() {
+        if (master) {
+            return String.join("\n", header);
+        }
+        StringBuilder out = new StringBuilder();
+        header.forEach(line -> out.append(line).append('\n'));
+        appendSegments(out, 0, extinfs.length - 1);
+        return out.append(ENDLIST).toString();
+    }
+
+    /**
+     * The segments written so far, without #EXT-X-ENDLIST, for playback while the encoder
+     * is still running. Players start EVENT playlists at the live edge by default, so
+     * #EXT-X-START points them at the first segment instead.
+     */
+    public String renderInProgress() {
+        List<String> lines = new ArrayList<>(header);
+        if (lines.stream().noneMatch(line -> line.startsWith("#EXT-X-START:"))) {
+            lines.add(Math.min(1, lines.size()), START_AT_BEGINNING);
+        }
+        StringBuilder out = new StringBuilder();
+        lines.forEach(line -> out.append(line).append('\n'));
+        appendSegments(out, 0, extinfs.length - 1);
+        out.setLength(out.length() - 1);
+        return out.toString();
+    }
+
+    /**
+     * Segments [start, end] of a live window, or the complete playlist when
+     * {@code complete} is set. Equal windows render to identical bytes.
+     */
+    public record Window(int start, int end, boolean complete) {
+    }
+
+    /**
+     * The window of at most {@code windowSize} segments ending at the one playing
+     * {@code secondsSinceStart} into the video; complete once the offset passes the end.
+     * A playlist that is still being written stays live at its last segment instead.
+     */
+    public Window windowAt(double secondsSinceStart, int windowSize) {
+        if ((ended || master) && secondsSinceStart >= totalDuration()) {
+            return new Window(0, extinfs.length - 1, true);
+        }
+        // -1 before the first segment is written, which renders an empty window
+        int liveIndex = Math.min(segmentAt(secondsSinceStart), extinfs.length - 1);
+        return new Window(Math.max(0, liveIndex - windowSize + 1), liveIndex, false);
+    }
+
+    public String renderLive(double secondsSinceStart, int windowSize) {
+        return render(windowAt(secondsSinceStart, windowSize));
+    }
+
+    /**
+     * Renders a window with its media sequence number set to the first segment.
+     */
+    public String render(Window window) {
+        if (window.complete()) {
+            return renderComplete();
+        }
+        int startIndex = window.start();
+
+        List<String> lines = new ArrayList<>(header);
+        // A sliding window is not a VOD playlist, whatever the encoder wrote
+        lines.removeIf(line -> line.startsWith(PLAYLIST_TYPE));
+        boolean hasSequence = false;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startsWith(MEDIA_SEQUENCE)) {
+                lines.set(i, MEDIA_SEQUENCE + startIndex);
+                hasSequence = true;
+                break;
+            }
+        }
+        if (!hasSequence) {
+            lines.add(Math.min(1, lines.size()), MEDIA_SEQUENCE + startIndex);
+        }
+
+        StringBuilder out = new StringBuilder();
+        lines.forEach(line -> out.append(line).append('\n'));
+        appendSegments(out, startIndex, window.end());
+        // Drop the trailing newline, like the complete form
+        out.setLength(out.length() - 1);
+        return out.toString();
+    }
+
+    private void appendSegments(StringBuilder out, int from, int to) {
+        for (int i = from; i <= to; i++) {
+            out.append(extinfs[i]).append('\n').append(uris[i]).append('\n');
+        }
+    }
+}
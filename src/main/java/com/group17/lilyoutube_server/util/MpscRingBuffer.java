@@ -0,0 +1,72 @@
+package com.group17.lilyoutube_server.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free multi-producer / single-consumer ring buffer.
+ * Producers claim a slot with a CAS on the tail and then publish into it;
+ * the single consumer drains published slots in order.
+ */
+public class MpscRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Ring buffer capacity must be at least 2");
+        }
+        int capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean offer(T item) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.lazySet((int) (t & mask), item);
+        return true;
+    }
+
+    /**
+     * Drains up to {@code limit} items. Must only be called from one thread at a time.
+     * Stops early at a slot that has been claimed but not yet published.
+     */
+    public int drain(Consumer<T> consumer, int limit) {
+        long h = head.get();
+        int drained = 0;
+        while (drained < limit) {
+            int index = (int) (h & mask);
+            T item = slots.get(index);
+            if (item == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            h++;
+            head.lazySet(h);
+            consumer.accept(item);
+            drained++;
+        }
+        return drained;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,85 @@
+package com.group17.lilyoutube_server.controller;
+
+import com.group17.lilyoutube_server.service.ThumbnailService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VideoControllerThumbnailTest {
+
+    private static final byte[] ORIGINAL = {1};
+    private static final byte[] VARIANT = {2};
+
+    private static VideoController controller(String originalType) {
+        ThumbnailService thumbnails = new ThumbnailService() {
+            @Override
+            public CachedThumbnail getThumbnail(String name) {
+                return name.equals("t") ? new CachedThumbnail(ORIGINAL, originalType) : null;
+            }
+
+            @Override
+            public CachedThumbnail getThumbnailVariant(String name, int width) {
+                return name.equals("t") ? new CachedThumbnail(VARIANT, MediaType.IMAGE_JPEG_VALUE) : null;
+            }
+        };
+        return new VideoController(thumbnails, null, null, null, null, null);
+    }
+
+    @Test
+    void servesTheVariantWhenJpegIsAccepted() {
+        ResponseEntity<byte[]> response = controller(MediaType.IMAGE_PNG_VALUE)
+                .getThumbnail("t", 320, "image/avif,image/webp,image/*;q=0.8");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(VARIANT, response.getBody());
+        assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType());
+        assertTrue(response.getHeaders().getVary().contains(HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    void servesTheVariantWithoutAcceptHeader() {
+        ResponseEntity<byte[]> response = controller(MediaType.IMAGE_PNG_VALUE).getThumbnail("t", 320, null);
+
+        assertArrayEquals(VARIANT, response.getBody());
+    }
+
+    @Test
+    void servesTheOriginalWithoutWidth() {
+        ResponseEntity<byte[]> response = controller(MediaType.IMAGE_PNG_VALUE).getThumbnail("t", null, "*/*");
+
+        assertArrayEquals(ORIGINAL, response.getBody());
+        assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+    }
+
+    @Test
+    void fallsBackToTheOriginalWhenOnlyItsTypeIsAccepted() {
+        ResponseEntity<byte[]> response = controller(MediaType.IMAGE_PNG_VALUE).getThumbnail("t", 320, "image/png");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(ORIGINAL, response.getBody());
+    }
+
+    @Test
+    void answers406WhenNoServableTypeIsAccepted() {
+        ResponseEntity<byte[]> response = controller(MediaType.IMAGE_JPEG_VALUE).getThumbnail("t", 320, "image/png");
+
+        assertEquals(HttpStatus.NOT_ACCEPTABLE, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void answers404ForUnknownThumbnails() {
+        assertEquals(HttpStatus.NOT_FOUND, controller(MediaType.IMAGE_JPEG_VALUE)
+                .getThumbnail("missing", 320, null).getStatusCode());
+    }
+
+    @Test
+    void rejectsNonPositiveWidths() {
+        assertThrows(IllegalArgumentException.class,
+                () -> controller(MediaType.IMAGE_JPEG_VALUE).getThumbnail("t", 0, null));
+    }
+}
@@ -0,0 +1,105 @@
+package com.group17.lilyoutube_server.crdt;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link GCounter} with the previous HashMap-backed implementation.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.group17.lilyoutube_server.crdt.GCounterBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GCounterBenchmark {
+
+    private static final String[] REPLICAS = {"app1", "app2", "app3"};
+
+    private GCounter counter;
+    private HashMapGCounter legacy;
+    private Map<String, Long> remote;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        counter = new GCounter();
+        legacy = new HashMapGCounter();
+        remote = new HashMap<>();
+        for (String replica : REPLICAS) {
+            remote.put(replica, 1_000L);
+        }
+    }
+
+    @Benchmark
+    public long incrementAndRead() {
+        counter.increment("app1", 1);
+        return counter.getValue();
+    }
+
+    @Benchmark
+    public long legacyIncrementAndRead() {
+        legacy.increment("app1", 1);
+        return legacy.getValue();
+    }
+
+    @Benchmark
+    public long mergeAndRead() {
+        counter.merge(remote);
+        return counter.getValue();
+    }
+
+    @Benchmark
+    public long legacyMergeAndRead() {
+        legacy.merge(new HashMapGCounter(remote));
+        return legacy.getValue();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long concurrentIncrement() {
+        counter.increment("app1", 1);
+        return counter.getValue();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GCounterBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * The counter as it was before it moved to slot arrays; not thread-safe, so it has
+     * no concurrent benchmark.
+     */
+    static class HashMapGCounter {
+        private final Map<String, Long> counters;
+
+        HashMapGCounter() {
+            this.counters = new HashMap<>();
+        }
+
+        HashMapGCounter(Map<String, Long> counters) {
+            this.counters = new HashMap<>(counters);
+        }
+
+        void increment(String replicaId, long delta) {
+            counters.put(replicaId, counters.getOrDefault(replicaId, 0L) + delta);
+        }
+
+        void merge(HashMapGCounter other) {
+            for (Map.Entry<String, Long> entry : other.counters.entrySet()) {
+                counters.put(entry.getKey(), Math.max(counters.getOrDefault(entry.getKey(), 0L), entry.getValue()));
+            }
+        }
+
+        long getValue() {
+            return counters.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.group17.lilyoutube_server.crdt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GCounterTest {
+
+    @Test
+    void mergeKeepsMaximumPerReplica() {
+        ReplicaIds ids = new ReplicaIds();
+        GCounter local = new GCounter(ids);
+        local.increment("app1", 5);
+        local.increment("app2", 1);
+
+        assertTrue(local.merge(Map.of("app1", 3L, "app2", 4L, "app3", 2L)));
+        assertFalse(local.merge(Map.of("app1", 5L)));
+
+        assertEquals(Map.of("app1", 5L, "app2", 4L, "app3", 2L), local.getCounters());
+        assertEquals(11, local.getValue());
+    }
+
+    @Test
+    void extractDeltaReturnsIncrementsOfAdvancedReplicas() {
+        GCounter counter = new GCounter(new ReplicaIds());
+        counter.merge(Map.of("app1", 3L, "app2", 4L));
+        assertEquals(Map.of("app1", 3L, "app2", 4L), counter.extractDelta());
+
+        counter.increment("app2", 2);
+        Map<String, Long> delta = counter.extractDelta();
+        assertEquals(Map.of("app2", 2L), delta);
+        assertTrue(counter.extractDelta().isEmpty());
+
+        counter.restoreDelta(delta);
+        counter.increment("app2", 1);
+        assertEquals(Map.of("app2", 3L), counter.extractDelta());
+    }
+
+    @Test
+    void boundedRegistryRejectsNamesBeyondItsSize() {
+        ReplicaIds ids = new ReplicaIds(2);
+        GCounter counter = new GCounter(ids);
+        counter.increment("app1", 1);
+        counter.increment("app2", 1);
+        counter.increment("app1", 1);
+
+        assertThrows(IllegalStateException.class, () -> counter.increment("app3", 1));
+        assertEquals(3, counter.getValue());
+    }
+
+    @Test
+    void countersFromPeerMapsDoNotUseTheSharedRegistry() {
+        int before = ReplicaIds.shared().size();
+        new GCounter(Map.of("peer-" + System.nanoTime(), 1L));
+        PNCounter.fromFields(Map.of("p:peer-" + System.nanoTime(), 1L));
+
+        assertEquals(before, ReplicaIds.shared().size());
+    }
+
+    @Test
+    void concurrentIncrementsWhileReplicasAppear() throws Exception {
+        ReplicaIds ids = new ReplicaIds();
+        GCounter counter = new GCounter(ids);
+        int threads = 8;
+        int perThread = 10_000;
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            String replica = "replica-" + t;
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    counter.increment(replica, 1);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertEquals((long) threads * perThread, counter.getValue());
+        assertEquals(threads, counter.getCounters().size());
+        counter.getCounters().values().forEach(v -> assertEquals(perThread, v));
+    }
+
+    @Test
+    void rejectsNegativeDelta() {
+        assertThrows(IllegalArgumentException.class, () -> new GCounter().increment("app1", -1));
+    }
+}
@@ -0,0 +1,38 @@
+package com.group17.lilyoutube_server.crdt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PNCounterTest {
+
+    @Test
+    void likesAndUnlikesFromSeveralReplicasConverge() {
+        ReplicaIds ids = new ReplicaIds();
+        PNCounter a = new PNCounter(ids);
+        PNCounter b = new PNCounter(ids);
+        a.increment("app1", 3);
+        a.decrement("app1", 1);
+        b.increment("app2", 2);
+        b.decrement("app2", 2);
+
+        a.merge(b);
+        b.merge(a);
+
+        assertEquals(2, a.getValue());
+        assertEquals(a.toFields(), b.toFields());
+        assertEquals(Map.of("p:app1", 3L, "n:app1", 1L, "p:app2", 2L, "n:app2", 2L), a.toFields());
+    }
+
+    @Test
+    void mergeFieldsKeepsMaximumAndIgnoresUnknownFields() {
+        PNCounter counter = PNCounter.fromFields(Map.of("p:app1", 4L, "n:app1", 1L, "app1", 99L));
+        assertEquals(3, counter.getValue());
+
+        assertFalse(counter.mergeFields(Map.of("p:app1", 2L)));
+        assertTrue(counter.mergeFields(Map.of("n:app1", 2L)));
+        assertEquals(2, counter.getValue());
+    }
+}
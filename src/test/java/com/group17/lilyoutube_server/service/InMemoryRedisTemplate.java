@@ -0,0 +1,186 @@
+package com.group17.lilyoutube_server.service;
+
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Single-threaded stand-in for Redis covering the commands the services here use.
+ * Expiry is not modelled; delete a key to make it expire. Lua scripts cannot run
+ * here, so a test registers a Java replay of each script it needs with
+ * {@link #onScript}, keyed by a command that only that script contains.
+ */
+class InMemoryRedisTemplate extends StringRedisTemplate {
+
+    final Map<String, String> strings = new HashMap<>();
+    final Map<String, Map<String, String>> hashes = new HashMap<>();
+    final Map<String, LinkedList<String>> lists = new HashMap<>();
+    final Map<String, Map<String, Double>> zsets = new HashMap<>();
+    final Map<String, Set<String>> sets = new HashMap<>();
+    private final Map<String, BiFunction<List<String>, Object[], Object>> scripts = new LinkedHashMap<>();
+
+    void onScript(String command, BiFunction<List<String>, Object[], Object> replay) {
+        scripts.put(command, replay);
+    }
+
+    LinkedList<String> list(String key) {
+        return lists.computeIfAbsent(key, k -> new LinkedList<>());
+    }
+
+    Map<String, Double> zset(String key) {
+        return zsets.computeIfAbsent(key, k -> new HashMap<>());
+    }
+
+    Map<String, String> hash(String key) {
+        return hashes.computeIfAbsent(key, k -> new HashMap<>());
+    }
+
+    // Lowest score first, ties by member like Redis
+    List<String> zrange(String key) {
+        return zset(key).entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        for (Map.Entry<String, BiFunction<List<String>, Object[], Object>> replay : scripts.entrySet()) {
+            if (script.getScriptAsString().contains(replay.getKey())) {
+                return (T) replay.getValue().apply(keys, args);
+            }
+        }
+        throw new UnsupportedOperationException("No replay for script: " + script.getScriptAsString());
+    }
+
+    @Override
+    public Boolean hasKey(String key) {
+        return strings.containsKey(key) || !hash(key).isEmpty() || !list(key).isEmpty()
+                || !zset(key).isEmpty() || sets.containsKey(key) && !sets.get(key).isEmpty();
+    }
+
+    @Override
+    public Boolean delete(String key) {
+        boolean existed = hasKey(key);
+        strings.remove(key);
+        hashes.remove(key);
+        lists.remove(key);
+        zsets.remove(key);
+        sets.remove(key);
+        return existed;
+    }
+
+    @Override
+    public Boolean expire(String key, long timeout, TimeUnit unit) {
+        return hasKey(key);
+    }
+
+    @Override
+    public ValueOperations<String, String> opsForValue() {
+        return proxy(ValueOperations.class, (name, args) -> switch (name) {
+            case "set" -> {
+                strings.put((String) args[0], (String) args[1]);
+                yield null;
+            }
+            case "get" -> strings.get((String) args[0]);
+            default -> unsupported("value", name);
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <HK, HV> HashOperations<String, HK, HV> opsForHash() {
+        return proxy(HashOperations.class, (name, args) -> {
+            Map<String, String> hash = hash((String) args[0]);
+            return switch (name) {
+                case "put" -> {
+                    hash.put((String) args[1], (String) args[2]);
+                    yield null;
+                }
+                case "putAll" -> {
+                    hash.putAll((Map<String, String>) args[1]);
+                    yield null;
+                }
+                case "get" -> hash.get((String) args[1]);
+                case "hasKey" -> hash.containsKey((String) args[1]);
+                case "entries" -> new HashMap<Object, Object>(hash);
+                case "increment" -> {
+                    long value = Long.parseLong(hash.getOrDefault((String) args[1], "0")) + (Long) args[2];
+                    hash.put((String) args[1], Long.toString(value));
+                    yield value;
+                }
+                case "delete" -> Arrays.stream((Object[]) args[1]).filter(field -> hash.remove(field) != null).count();
+                default -> unsupported("hash", name);
+            };
+        });
+    }
+
+    @Override
+    public ListOperations<String, String> opsForList() {
+        return proxy(ListOperations.class, (name, args) -> {
+            LinkedList<String> list = list((String) args[0]);
+            return switch (name) {
+                // Only the RIGHT -> LEFT form, and without blocking
+                case "move" -> {
+                    String value = list.pollLast();
+                    if (value != null) {
+                        list((String) args[2]).addFirst(value);
+                    }
+                    yield value;
+                }
+                case "leftPush" -> {
+                    list.addFirst((String) args[1]);
+                    yield (long) list.size();
+                }
+                case "rightPop" -> list.pollLast();
+                case "remove" -> list.removeFirstOccurrence(args[2]) ? 1L : 0L;
+                case "indexOf" -> list.contains(args[1]) ? (long) list.indexOf(args[1]) : null;
+                case "size" -> (long) list.size();
+                case "range" -> new ArrayList<>(list);
+                default -> unsupported("list", name);
+            };
+        });
+    }
+
+    @Override
+    public ZSetOperations<String, String> opsForZSet() {
+        return proxy(ZSetOperations.class, (name, args) -> switch (name) {
+            case "add" -> zset((String) args[0]).put((String) args[1], (Double) args[2]) == null;
+            case "zCard" -> (long) zset((String) args[0]).size();
+            default -> unsupported("zset", name);
+        });
+    }
+
+    @Override
+    public SetOperations<String, String> opsForSet() {
+        return proxy(SetOperations.class, (name, args) -> {
+            Set<String> set = sets.computeIfAbsent((String) args[0], k -> new HashSet<>());
+            return switch (name) {
+                case "add" -> Arrays.stream((Object[]) args[1]).filter(value -> set.add((String) value)).count();
+                case "remove" -> Arrays.stream((Object[]) args[1]).filter(set::remove).count();
+                case "members" -> new HashSet<>(set);
+                default -> unsupported("set", name);
+            };
+        });
+    }
+
+    private static Object unsupported(String type, String name) {
+        throw new UnsupportedOperationException(type + " operation " + name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<?> type, BiFunction<String, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(InMemoryRedisTemplate.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.apply(method.getName(), args));
+    }
+}
@@ -0,0 +1,51 @@
+package com.group17.lilyoutube_server.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaContentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    // Every call fails as if Redis were down
+    private final MediaContentStore store = new MediaContentStore(new StringRedisTemplate() {
+        @Override
+        public <HK, HV> HashOperations<String, HK, HV> opsForHash() {
+            throw new RedisConnectionFailureException("connection refused");
+        }
+
+        @Override
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            throw new RedisConnectionFailureException("connection refused");
+        }
+    }, new SimpleMeterRegistry());
+
+    @Test
+    void keepsTheUploadWhenTheIndexIsUnavailable() throws Exception {
+        Path file = Files.writeString(dir.resolve("a.mp4"), "video");
+
+        MediaContentStore.Stored stored = store.deduplicate(MediaContentStore.Kind.VIDEO, file, "a.m3u8", name -> true);
+
+        assertEquals("a.m3u8", stored.name());
+        assertFalse(stored.duplicate());
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void releaseReportsUnknownWhenTheIndexIsUnavailable() {
+        assertEquals(-1L, store.release("a.m3u8"));
+        assertEquals(-1L, store.release(null));
+    }
+}
@@ -0,0 +1,34 @@
+package com.group17.lilyoutube_server.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailServiceTest {
+
+    private static final List<Integer> WIDTHS = List.of(160, 320, 640);
+
+    @Test
+    void picksTheNarrowestVariantAtLeastAsWide() {
+        assertEquals(160, ThumbnailService.variantWidthFor(1, WIDTHS));
+        assertEquals(160, ThumbnailService.variantWidthFor(160, WIDTHS));
+        assertEquals(320, ThumbnailService.variantWidthFor(161, WIDTHS));
+        assertEquals(640, ThumbnailService.variantWidthFor(480, WIDTHS));
+    }
+
+    @Test
+    void fallsBackToTheWidestVariant() {
+        assertEquals(640, ThumbnailService.variantWidthFor(641, WIDTHS));
+        assertEquals(640, ThumbnailService.variantWidthFor(4000, WIDTHS));
+    }
+
+    @Test
+    void rejectsNamesOutsideTheThumbnailDirectories() {
+        assertTrue(ThumbnailService.isValidName("3f6c2a.jpg"));
+        assertFalse(ThumbnailService.isValidName("../videos/secret.jpg"));
+        assertFalse(ThumbnailService.isValidName("../../etc/passwd"));
+        assertFalse(ThumbnailService.isValidName("/etc/passwd"));
+    }
+}
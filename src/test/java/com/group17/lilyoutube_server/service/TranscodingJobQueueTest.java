@@ -0,0 +1,170 @@
+package com.group17.lilyoutube_server.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranscodingJobQueueTest {
+
+    private static final String QUEUE = "video_transcoding_queue";
+    private static final String PENDING = "video_transcoding_pending";
+    private static final String DELAYED = "video_transcoding_delayed";
+
+    private InMemoryRedisTemplate redis;
+    private TranscodingJobQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new InMemoryRedisTemplate();
+        // Replays of the Lua scripts, command for command
+        redis.onScript("ZPOPMIN", (keys, args) -> {
+            if (!redis.list(keys.get(1)).isEmpty()) {
+                return 0L;
+            }
+            List<String> pending = redis.zrange(keys.get(0));
+            if (pending.isEmpty()) {
+                return 0L;
+            }
+            redis.zset(keys.get(0)).remove(pending.get(0));
+            redis.list(keys.get(1)).addFirst(pending.get(0));
+            return 1L;
+        });
+        redis.onScript("ZRANGEBYSCORE", (keys, args) -> {
+            double now = Double.parseDouble((String) args[0]);
+            List<String> due = redis.zrange(keys.get(0)).stream()
+                    .filter(job -> redis.zset(keys.get(0)).get(job) <= now)
+                    .limit(100)
+                    .toList();
+            for (String job : due) {
+                redis.zset(keys.get(0)).remove(job);
+                redis.zset(keys.get(1)).put(job, Double.parseDouble(redis.hash(keys.get(2)).getOrDefault(job, "0")));
+            }
+            return (long) due.size();
+        });
+
+        queue = new TranscodingJobQueue(redis);
+        set("leaseSeconds", 30L);
+        set("maxAttempts", 3);
+        // Retries are due at once
+        set("retryBackoffMs", 0L);
+    }
+
+    private void set(String name, Object value) throws Exception {
+        Field field = TranscodingJobQueue.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(queue, value);
+    }
+
+    private String take(String workerId) {
+        queue.heartbeat(workerId);
+        return queue.take(workerId, 1, TimeUnit.SECONDS);
+    }
+
+    private void expireLease(String workerId) {
+        redis.delete("video_transcoding_lease:" + workerId);
+    }
+
+    @Test
+    void dispatchesOnlyWhenNoJobIsWaiting() {
+        queue.enqueue("a.mp4", 600);
+        queue.enqueue("long.mp4", 3600);
+        queue.enqueue("short.mp4", 60);
+
+        // The first job went straight to the workers, the others wait their turn
+        assertEquals(List.of("a.mp4"), redis.list(QUEUE));
+        assertEquals(3, queue.queueLength());
+
+        // Taking a job lines up the next one, and only one
+        assertEquals("a.mp4", take("w1"));
+        assertEquals(List.of("short.mp4"), redis.list(QUEUE));
+        assertEquals(List.of("long.mp4"), redis.zrange(PENDING));
+    }
+
+    @Test
+    void failedJobIsRetriedUntilDeadLettered() {
+        queue.enqueue("a.mp4", 60);
+
+        for (int attempt = 1; attempt < 3; attempt++) {
+            assertEquals("a.mp4", take("w1"));
+            assertTrue(queue.fail("w1", "a.mp4"));
+            assertEquals(TranscodingJobQueue.JobState.ACTIVE, queue.state("a.mp4"));
+            assertEquals(List.of("a.mp4"), redis.zrange(DELAYED));
+
+            queue.maintain();
+            assertEquals(List.of("a.mp4"), redis.list(QUEUE));
+        }
+
+        assertEquals("a.mp4", take("w1"));
+        assertTrue(queue.fail("w1", "a.mp4"));
+
+        assertEquals(TranscodingJobQueue.JobState.DEAD, queue.state("a.mp4"));
+        assertEquals(1, queue.deadLetterLength());
+        assertEquals(0, queue.queueLength());
+        assertTrue(redis.zrange(DELAYED).isEmpty());
+    }
+
+    @Test
+    void retryKeepsItsOriginalScore() {
+        queue.enqueue("retried.mp4", 1000);
+        assertEquals("retried.mp4", take("w1"));
+        queue.enqueue("waiting.mp4", 0);
+        // Arrived later, but would finish sooner than the retried job
+        queue.enqueue("sooner.mp4", 500);
+
+        assertTrue(queue.fail("w1", "retried.mp4"));
+        queue.maintain();
+        assertEquals(List.of("sooner.mp4", "retried.mp4"), redis.zrange(PENDING));
+
+        assertEquals("waiting.mp4", take("w2"));
+        assertEquals("sooner.mp4", take("w3"));
+        assertEquals("retried.mp4", take("w4"));
+    }
+
+    @Test
+    void reclaimCountsAsAnAttempt() {
+        queue.enqueue("a.mp4", 60);
+
+        // Two nodes die holding it, then a third run fails
+        assertEquals("a.mp4", take("w1"));
+        expireLease("w1");
+        assertEquals(1, queue.maintain());
+        queue.maintain();
+
+        assertEquals("a.mp4", take("w2"));
+        expireLease("w2");
+        assertEquals(1, queue.maintain());
+        queue.maintain();
+
+        assertEquals("a.mp4", take("w3"));
+        assertTrue(queue.fail("w3", "a.mp4"));
+
+        assertEquals(TranscodingJobQueue.JobState.DEAD, queue.state("a.mp4"));
+    }
+
+    @Test
+    void reclaimedJobIsLeftAloneByItsFormerWorker() {
+        queue.enqueue("a.mp4", 60);
+        assertEquals("a.mp4", take("w1"));
+        expireLease("w1");
+        queue.maintain();
+        queue.maintain();
+        assertEquals("a.mp4", take("w2"));
+
+        // w1 was only slow: its late outcome must not touch w2's run
+        assertFalse(queue.complete("w1", "a.mp4"));
+        assertFalse(queue.fail("w1", "a.mp4"));
+
+        assertEquals(TranscodingJobQueue.JobState.ACTIVE, queue.state("a.mp4"));
+        assertEquals(Map.of("a.mp4", "1"), redis.hash("video_transcoding_attempts"));
+        assertTrue(redis.zrange(DELAYED).isEmpty());
+
+        assertTrue(queue.complete("w2", "a.mp4"));
+        assertEquals(TranscodingJobQueue.JobState.NONE, queue.state("a.mp4"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.group17.lilyoutube_server.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static com.group17.lilyoutube_server.service.TranscodingProfileService.SourceSize.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranscodingProfileServiceTest {
+
+    @Test
+    void parsesNamePresetAndPasses() {
+        List<TranscodingProfileService.Profile> profiles =
+                TranscodingProfileService.parseProfiles("fast:veryfast:1, quality:slow:2");
+
+        assertEquals(List.of(
+                new TranscodingProfileService.Profile("fast", "veryfast", 1),
+                new TranscodingProfileService.Profile("quality", "slow", 2)), profiles);
+    }
+
+    @Test
+    void rejectsMalformedProfiles() {
+        assertThrows(IllegalArgumentException.class, () -> TranscodingProfileService.parseProfiles("fast:veryfast"));
+        assertThrows(IllegalArgumentException.class, () -> TranscodingProfileService.parseProfiles("fast:veryfast:3"));
+        assertThrows(IllegalArgumentException.class, () -> TranscodingProfileService.parseProfiles("fast:veryfast:0"));
+        assertThrows(IllegalArgumentException.class, () -> TranscodingProfileService.parseProfiles("fast:veryfast:x"));
+    }
+
+    @Test
+    void classifiesBy1080pEquivalentSecondsWithInclusiveBounds() {
+        assertEquals(SHORT, TranscodingProfileService.classify(180, 1080, 180, 1200));
+        assertEquals(DEFAULT, TranscodingProfileService.classify(181, 1080, 180, 1200));
+        assertEquals(DEFAULT, TranscodingProfileService.classify(1199, 1080, 180, 1200));
+        assertEquals(LONG, TranscodingProfileService.classify(1200, 1080, 180, 1200));
+        // Ten minutes of 2160p is forty minutes of 1080p
+        assertEquals(LONG, TranscodingProfileService.classify(600, 2160, 180, 1200));
+        // and ten minutes of 540p only two and a half
+        assertEquals(SHORT, TranscodingProfileService.classify(600, 540, 180, 1200));
+    }
+
+    @Test
+    void unknownDurationIsLong() {
+        assertEquals(LONG, TranscodingProfileService.classify(0, 1080, 180, 1200));
+        assertEquals(LONG, TranscodingProfileService.classify(-1, 720, 180, 1200));
+    }
+
+    @Test
+    void unknownHeightCountsAs1080p() {
+        assertEquals(TranscodingProfileService.classify(100, 1080, 180, 1200),
+                TranscodingProfileService.classify(100, 0, 180, 1200));
+    }
+
+    @Test
+    void workWeighsFramesByRenditionPixels() {
+        assertEquals(300, TranscodingProfileService.work(10, 30, List.of(1080)), 1e-9);
+        assertEquals(300 * 1.25, TranscodingProfileService.work(10, 30, List.of(1080, 540)), 1e-9);
+        // Unknown frame rate falls back to 30
+        assertEquals(300, TranscodingProfileService.work(10, 0, List.of(1080)), 1e-9);
+    }
+
+    @Test
+    void registersOneRateGaugePerProfile() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TranscodingProfileService service = new TranscodingProfileService(null, registry);
+
+        service.setProfiles("fast:veryfast:1,standard:medium:1,quality:slow:2");
+
+        assertEquals(3, registry.find("app.transcoding.profile.rate").gauges().size());
+        assertNotNull(registry.find("app.transcoding.profile.rate").tag("profile", "quality").gauge());
+    }
+
+    @Test
+    void chunkedEncodesGetTheNextOnePassProfile() throws Exception {
+        TranscodingProfileService service = service("fast:veryfast:1,standard:medium:1,quality:slow:2",
+                "quality", "standard", "fast");
+
+        // Ten minutes of 540p is short, but quality is two-pass
+        assertEquals("quality", service.select(600, 540).name());
+        assertEquals("standard", service.select(600, 540, true).name());
+        assertEquals("fast", service.select(1200, 1080, true).name());
+    }
+
+    @Test
+    void chunkedEncodesFailWithoutAnyOnePassProfile() throws Exception {
+        TranscodingProfileService service = service("quality:slow:2,best:veryslow:2", "best", "quality", "quality");
+
+        assertEquals("best", service.select(60, 1080).name());
+        assertThrows(IllegalStateException.class, () -> service.select(60, 1080, true));
+    }
+
+    private static TranscodingProfileService service(String profiles, String shortName, String defaultName,
+                                                     String longName) throws Exception {
+        TranscodingProfileService service = new TranscodingProfileService(null, new SimpleMeterRegistry());
+        service.setProfiles(profiles);
+        set(service, "shortProfile", shortName);
+        set(service, "defaultProfile", defaultName);
+        set(service, "longProfile", longName);
+        set(service, "shortSeconds", 180.0);
+        set(service, "longSeconds", 1200.0);
+        return service;
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
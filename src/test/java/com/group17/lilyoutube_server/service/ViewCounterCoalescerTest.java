@@ -0,0 +1,114 @@
+package com.group17.lilyoutube_server.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewCounterCoalescerTest {
+
+    private final Map<String, Long> hashes = new HashMap<>();
+    private final List<Long> marked = new ArrayList<>();
+    private boolean redisDown;
+    private ViewCounterCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StringRedisTemplate redis = new StringRedisTemplate() {
+            @Override
+            public List<Object> executePipelined(RedisCallback<?> action) {
+                if (redisDown) {
+                    throw new IllegalStateException("connection refused");
+                }
+                action.doInRedis(connection());
+                return List.of();
+            }
+        };
+        ViewChangeLog changeLog = new ViewChangeLog(redis) {
+            @Override
+            public void markChanged(Collection<Long> videoIds) {
+                marked.addAll(videoIds);
+            }
+        };
+        coalescer = new ViewCounterCoalescer(redis, changeLog, new SimpleMeterRegistry());
+        Field replicaName = ViewCounterCoalescer.class.getDeclaredField("replicaName");
+        replicaName.setAccessible(true);
+        replicaName.set(coalescer, "app1");
+    }
+
+    // Records HINCRBY as key/field -> sum
+    private RedisConnection connection() {
+        RedisHashCommands hashCommands = (RedisHashCommands) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisHashCommands.class}, (proxy, method, args) -> {
+                    assertEquals("hIncrBy", method.getName());
+                    String key = new String((byte[]) args[0], StandardCharsets.UTF_8)
+                            + "/" + new String((byte[]) args[1], StandardCharsets.UTF_8);
+                    return hashes.merge(key, (Long) args[2], Long::sum);
+                });
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, (proxy, method, args) -> {
+                    assertEquals("hashCommands", method.getName());
+                    return hashCommands;
+                });
+    }
+
+    @Test
+    void flushPushesOnlyViewsSinceThePreviousFlush() {
+        coalescer.record(7L);
+        coalescer.record(7L);
+        coalescer.record(8L);
+        coalescer.flush();
+        coalescer.record(7L);
+        coalescer.flush();
+
+        assertEquals(3L, hashes.get("video_views:7/app1"));
+        assertEquals(1L, hashes.get("video_views:8/app1"));
+        assertEquals(List.of(7L, 7L, 8L), marked.stream().sorted().toList());
+    }
+
+    @Test
+    void failedFlushKeepsTheViewsForTheNextOne() {
+        coalescer.record(7L);
+        redisDown = true;
+        coalescer.flush();
+        assertTrue(hashes.isEmpty());
+        assertTrue(marked.isEmpty());
+
+        coalescer.record(7L);
+        redisDown = false;
+        coalescer.flush();
+
+        assertEquals(2L, hashes.get("video_views:7/app1"));
+        assertEquals(List.of(7L), marked);
+    }
+
+    @Test
+    void viewsAfterAnIdleRoundSurviveAFailedFlush() {
+        coalescer.record(7L);
+        coalescer.flush();
+        // Idle round: the counter is retired
+        coalescer.flush();
+        coalescer.record(7L);
+        redisDown = true;
+        coalescer.flush();
+
+        redisDown = false;
+        coalescer.flush();
+
+        assertEquals(2L, hashes.get("video_views:7/app1"));
+    }
+}
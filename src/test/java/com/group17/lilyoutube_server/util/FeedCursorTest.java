@@ -0,0 +1,42 @@
+package com.group17.lilyoutube_server.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FeedCursorTest {
+
+    @Test
+    void roundTripsThroughTheToken() {
+        FeedCursor cursor = new FeedCursor(LocalDateTime.of(2025, 3, 14, 15, 9, 26, 535_000_000), 42L);
+
+        String token = cursor.encode();
+
+        assertFalse(token.contains("="));
+        assertEquals(cursor, FeedCursor.decode(token));
+    }
+
+    @Test
+    void keepsWholeSecondTimestamps() {
+        FeedCursor cursor = new FeedCursor(LocalDateTime.of(2025, 1, 1, 0, 0), 7L);
+
+        assertEquals(cursor, FeedCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> FeedCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> FeedCursor.decode(encode("2025-01-01T00:00")));
+        assertThrows(IllegalArgumentException.class, () -> FeedCursor.decode(encode("yesterday|1")));
+        assertThrows(IllegalArgumentException.class, () -> FeedCursor.decode(encode("2025-01-01T00:00|abc")));
+        assertThrows(IllegalArgumentException.class, () -> FeedCursor.decode(""));
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,49 @@
+package com.group17.lilyoutube_server.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FfmpegProgressTest {
+
+    @Test
+    void reportsPercentFpsAndSpeedPerBlock() {
+        FfmpegProgress progress = new FfmpegProgress(20);
+
+        assertFalse(progress.accept("frame=120"));
+        assertFalse(progress.accept("fps=48.5"));
+        assertFalse(progress.accept("out_time_us=5000000"));
+        assertFalse(progress.accept("speed=1.94x"));
+        assertTrue(progress.accept("progress=continue"));
+
+        assertEquals(25, progress.percent(), 1e-9);
+        assertEquals(48.5, progress.fps(), 1e-9);
+        assertEquals(1.94, progress.speed(), 1e-9);
+        assertFalse(progress.isFinished());
+    }
+
+    @Test
+    void ignoresLogLinesAndUnknownValues() {
+        FfmpegProgress progress = new FfmpegProgress(10);
+
+        assertFalse(progress.accept("Input #0, mov,mp4,m4a,3gp,3g2,mj2, from 'in.mp4':"));
+        assertFalse(progress.accept("  Stream #0:0: Video: h264"));
+        assertFalse(progress.accept("out_time_us=N/A"));
+        assertFalse(progress.accept("speed=N/A"));
+        assertTrue(progress.accept("progress=continue"));
+
+        assertEquals(0, progress.percent(), 1e-9);
+        assertEquals(0, progress.speed(), 1e-9);
+    }
+
+    @Test
+    void endBlockIsComplete() {
+        FfmpegProgress progress = new FfmpegProgress(0);
+
+        progress.accept("out_time_us=9900000");
+        assertTrue(progress.accept("progress=end"));
+
+        assertTrue(progress.isFinished());
+        assertEquals(100, progress.percent(), 1e-9);
+    }
+}
@@ -0,0 +1,56 @@
+package com.group17.lilyoutube_server.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HlsChunkStitcherTest {
+
+    private static final List<String> FIRST = List.of(
+            "#EXTM3U",
+            "#EXT-X-VERSION:3",
+            "#EXT-X-TARGETDURATION:10",
+            "#EXT-X-MEDIA-SEQUENCE:0",
+            "#EXTINF:10.000000,", "a_0_000.ts",
+            "#EXTINF:10.000000,", "a_0_001.ts",
+            "#EXT-X-ENDLIST");
+
+    private static final List<String> SECOND = List.of(
+            "#EXTM3U",
+            "#EXT-X-VERSION:3",
+            "#EXT-X-TARGETDURATION:11",
+            "#EXT-X-MEDIA-SEQUENCE:2",
+            "#EXTINF:10.000000,", "a_0_002.ts",
+            "#EXTINF:4.200000,", "a_0_003.ts",
+            "#EXT-X-ENDLIST");
+
+    @Test
+    void joinsChunksWithContinuousMediaSequence() {
+        String stitched = HlsChunkStitcher.stitch(List.of(FIRST, SECOND), true, 10);
+        assertEquals(String.join("\n",
+                "#EXTM3U",
+                "#EXT-X-VERSION:3",
+                "#EXT-X-TARGETDURATION:11",
+                "#EXT-X-MEDIA-SEQUENCE:0",
+                "#EXT-X-PLAYLIST-TYPE:EVENT",
+                "#EXTINF:10.000000,", "a_0_000.ts",
+                "#EXTINF:10.000000,", "a_0_001.ts",
+                "#EXTINF:10.000000,", "a_0_002.ts",
+                "#EXTINF:4.200000,", "a_0_003.ts",
+                "#EXT-X-ENDLIST", ""), stitched);
+    }
+
+    @Test
+    void leavesPartialResultOpen() {
+        String stitched = HlsChunkStitcher.stitch(List.of(FIRST), false, 10);
+        assertTrue(stitched.endsWith("a_0_001.ts\n"));
+        assertFalse(stitched.contains("#EXT-X-ENDLIST"));
+    }
+
+    @Test
+    void rejectsGapsBetweenChunks() {
+        assertThrows(IllegalStateException.class, () -> HlsChunkStitcher.stitch(List.of(SECOND), true, 10));
+    }
+}
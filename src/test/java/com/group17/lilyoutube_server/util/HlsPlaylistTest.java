@@ -0,0 +1,119 @@
+package com.group17.lilyoutube_server.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HlsPlaylistTest {
+
+    private static final List<String> VOD = List.of(
+            "#EXTM3U",
+            "#EXT-X-VERSION:3",
+            "#EXT-X-TARGETDURATION:10",
+            "#EXT-X-MEDIA-SEQUENCE:0",
+            "#EXTINF:10.0,", "a_000.ts",
+            "#EXTINF:10.0,", "a_001.ts",
+            "#EXTINF:10.0,", "a_002.ts",
+            "#EXTINF:10.0,", "a_003.ts",
+            "#EXTINF:4.5,", "a_004.ts",
+            "#EXT-X-ENDLIST");
+
+    @Test
+    void findsSegmentByPrefixSummedDuration() {
+        HlsPlaylist playlist = HlsPlaylist.parse(VOD);
+        assertEquals(5, playlist.segmentCount());
+        assertEquals(44.5, playlist.totalDuration(), 1e-9);
+        assertEquals(0, playlist.segmentAt(0));
+        assertEquals(0, playlist.segmentAt(10));
+        assertEquals(1, playlist.segmentAt(10.5));
+        assertEquals(4, playlist.segmentAt(44));
+        assertEquals(4, playlist.segmentAt(100));
+    }
+
+    @Test
+    void rendersSlidingWindowWithMediaSequence() {
+        String window = HlsPlaylist.parse(VOD).renderLive(35, 3);
+        assertEquals(String.join("\n",
+                "#EXTM3U",
+                "#EXT-X-VERSION:3",
+                "#EXT-X-TARGETDURATION:10",
+                "#EXT-X-MEDIA-SEQUENCE:1",
+                "#EXTINF:10.0,", "a_001.ts",
+                "#EXTINF:10.0,", "a_002.ts",
+                "#EXTINF:10.0,", "a_003.ts"), window);
+    }
+
+    @Test
+    void rendersCompletePlaylistOnceThePremiereIsOver() {
+        String complete = HlsPlaylist.parse(VOD).renderLive(45, 3);
+        assertTrue(complete.startsWith("#EXTM3U\n"));
+        assertTrue(complete.endsWith("a_004.ts\n#EXT-X-ENDLIST"));
+        assertFalse(complete.contains("#EXT-X-MEDIA-SEQUENCE:1"));
+    }
+
+    @Test
+    void masterPlaylistIsNeverWindowed() {
+        List<String> master = List.of(
+                "#EXTM3U",
+                "#EXT-X-VERSION:3",
+                "#EXT-X-STREAM-INF:BANDWIDTH=5500000,RESOLUTION=1920x1080",
+                "a_0.m3u8",
+                "#EXT-X-STREAM-INF:BANDWIDTH=900000,RESOLUTION=640x360",
+                "a_1.m3u8");
+        HlsPlaylist playlist = HlsPlaylist.parse(master);
+        assertTrue(playlist.isMaster());
+        assertEquals(String.join("\n", master), playlist.renderLive(120, 3));
+    }
+
+    @Test
+    void liveWindowDropsVodPlaylistType() {
+        List<String> vod = new java.util.ArrayList<>(VOD);
+        vod.add(1, "#EXT-X-PLAYLIST-TYPE:VOD");
+        HlsPlaylist playlist = HlsPlaylist.parse(vod);
+        assertFalse(playlist.renderLive(15, 3).contains("PLAYLIST-TYPE"));
+        assertTrue(playlist.renderLive(100, 3).contains("#EXT-X-PLAYLIST-TYPE:VOD"));
+    }
+
+    @Test
+    void inProgressPlaylistStartsAtTheBeginningWithoutEndList() {
+        List<String> event = List.of(
+                "#EXTM3U",
+                "#EXT-X-VERSION:3",
+                "#EXT-X-TARGETDURATION:10",
+                "#EXT-X-MEDIA-SEQUENCE:0",
+                "#EXT-X-PLAYLIST-TYPE:EVENT",
+                "#EXTINF:10.0,", "a_000.ts",
+                "#EXTINF:10.0,", "a_001.ts");
+        HlsPlaylist playlist = HlsPlaylist.parse(event);
+        assertFalse(playlist.isEnded());
+        assertEquals(String.join("\n",
+                "#EXTM3U",
+                "#EXT-X-START:TIME-OFFSET=0",
+                "#EXT-X-VERSION:3",
+                "#EXT-X-TARGETDURATION:10",
+                "#EXT-X-MEDIA-SEQUENCE:0",
+                "#EXT-X-PLAYLIST-TYPE:EVENT",
+                "#EXTINF:10.0,", "a_000.ts",
+                "#EXTINF:10.0,", "a_001.ts"), playlist.renderInProgress());
+        assertTrue(HlsPlaylist.parse(VOD).isEnded());
+    }
+
+    @Test
+    void premiereOfUnfinishedPlaylistStaysLive() {
+        List<String> event = List.of(
+                "#EXTM3U",
+                "#EXT-X-TARGETDURATION:10",
+                "#EXTINF:10.0,", "a_000.ts",
+                "#EXTINF:10.0,", "a_001.ts");
+        HlsPlaylist playlist = HlsPlaylist.parse(event);
+        HlsPlaylist.Window window = playlist.windowAt(60, 3);
+        assertFalse(window.complete());
+        assertEquals(1, window.end());
+        assertFalse(playlist.render(window).contains("#EXT-X-ENDLIST"));
+
+        HlsPlaylist empty = HlsPlaylist.parse(List.of("#EXTM3U", "#EXT-X-TARGETDURATION:10"));
+        assertEquals("#EXTM3U\n#EXT-X-MEDIA-SEQUENCE:0\n#EXT-X-TARGETDURATION:10", empty.renderLive(5, 3));
+    }
+}
@@ -0,0 +1,55 @@
+package com.group17.lilyoutube_server.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscRingBufferTest {
+
+    @Test
+    void rejectsOffersWhenFull() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, ring.drain(drained::add, 2));
+        assertEquals(List.of(0, 1), drained);
+        assertTrue(ring.offer(5));
+        assertEquals(3, ring.size());
+    }
+
+    @Test
+    void concurrentProducersLoseNothing() throws Exception {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(1 << 16);
+        int producers = 4;
+        int perProducer = 10_000;
+        CountDownLatch done = new CountDownLatch(producers);
+        AtomicInteger rejected = new AtomicInteger();
+
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (!ring.offer(i)) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        AtomicInteger drained = new AtomicInteger();
+        ring.drain(item -> drained.incrementAndGet(), Integer.MAX_VALUE);
+        assertEquals(0, rejected.get());
+        assertEquals(producers * perProducer, drained.get());
+        assertEquals(0, ring.size());
+    }
+}